@@ -0,0 +1,123 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A local stand-in for the v2 REST API of Inquire, to smoke test a build of the extractor without a real backend, see
+ * etc/smoke/smoke.sh. Runs as a single source file: java StubInquireBackend.java &lt;port&gt; [ready file].
+ * It publishes two shared queries; each execution sends one partial result and then the final result.
+ */
+public class StubInquireBackend {
+
+    // Shared queries and the number of rows of their final result
+    private static final Map<String, Integer> QUERIES = Map.of("smoke_sessions", 3, "smoke_counts", 1);
+
+    private static final Set<String> tokens = ConcurrentHashMap.newKeySet();
+    // Query name and polls so far of each execution
+    private static final Map<String, String> executions = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> polls = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", Integer.parseInt(args[0])), 0);
+        server.createContext("/rest/v2/", StubInquireBackend::handle);
+        server.start();
+        //The smoke test waits for this file before running the extractor
+        if (args.length > 1) {
+            new File(args[1]).createNewFile();
+        }
+        System.out.println("Stub Inquire backend listening on http://127.0.0.1:" + args[0]);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getRequestBody().readAllBytes();
+            final String path = exchange.getRequestURI().getPath().substring("/rest".length());
+            final String query = exchange.getRequestURI().getQuery();
+            if (path.equals("/v2/auth/login")) {
+                final String token = UUID.randomUUID().toString();
+                tokens.add(token);
+                send(exchange, 200, "text/plain", token);
+                return;
+            }
+            final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !tokens.contains(authorization.replaceFirst("^Bearer ", ""))) {
+                send(exchange, 401, "text/plain", "");
+                return;
+            }
+            if (path.equals("/v2/auth/logout")) {
+                tokens.remove(authorization.replaceFirst("^Bearer ", ""));
+                exchange.sendResponseHeaders(204, -1);
+            } else if (path.startsWith("/v2/tql/shared-queries/submit/")) {
+                final String name = parameter(query, "identifier");
+                if (!QUERIES.containsKey(name)) {
+                    send(exchange, 200, "application/json", "{\"type\":\"FailureMessage\",\"errorMessage\":\"Unknown query " + name + "\"}");
+                    return;
+                }
+                final String id = UUID.randomUUID().toString();
+                executions.put(id, name);
+                polls.put(id, 0);
+                send(exchange, 200, "application/json", "{\"type\":\"StartExecutionMessage\",\"id\":\"" + id + "\",\"executionConfiguration\":{\"timeEstimate\":\"fast\"}}");
+            } else if (path.startsWith("/v2/tql/shared-queries/")) {
+                final StringBuilder list = new StringBuilder("[");
+                for (String name : QUERIES.keySet()) {
+                    list.append(list.length() > 1 ? "," : "").append("{\"publishedName\":\"").append(name).append("\",\"query\":\"lu s.id as id: ").append(name).append("\"}");
+                }
+                send(exchange, 200, "application/json", list.append("]").toString());
+            } else if (path.equals("/v2/tql/poll")) {
+                final String id = parameter(query, "id");
+                final String name = executions.get(id);
+                if (name == null) {
+                    send(exchange, 200, "application/json", "{\"type\":\"FailureMessage\",\"errorMessage\":\"Unknown execution " + id + "\"}");
+                } else if (polls.merge(id, 1, Integer::sum) == 1) {
+                    send(exchange, 200, "application/json", "{\"type\":\"PartialUpdateMessage\",\"id\":\"" + id + "\",\"result\":[" + row(0) + "],"
+                            + "\"progress\":{\"pagesProcessed\":1,\"estimatedPages\":2,\"seenResults\":1,\"seenSessions\":1,\"meanExecutionTime\":1.0},"
+                            + "\"aggregationMethod\":{\"method\":\"APPEND\"}}");
+                } else {
+                    final StringBuilder rows = new StringBuilder();
+                    for (int i = 0; i < QUERIES.get(name); i++) {
+                        rows.append(i > 0 ? "," : "").append(row(i));
+                    }
+                    executions.remove(id);
+                    send(exchange, 200, "application/json", "{\"type\":\"FinalResultMessage\",\"id\":\"" + id + "\",\"result\":[" + rows + "]}");
+                }
+            } else {
+                send(exchange, 404, "text/plain", "");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String row(int index) {
+        return "{\"id\":\"session-" + index + "\",\"count\":" + index + "}";
+    }
+
+    private static String parameter(String query, String name) {
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    return parameter.substring(name.length() + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+# Smoke test of a build of the extractor against the stub backend in etc/smoke/StubInquireBackend.java.
+# Give the command starting the extractor, it is run from the project root, e.g.
+#   etc/smoke/smoke.sh target/inquire_etl
+#   etc/smoke/smoke.sh java -jar target/inquire_etl-1.1.5-jar-with-dependencies.jar
+set -e
+cd "$(dirname "$0")/../.."
+
+output=target/smoke/smoke
+ready=target/smoke/stub.ready
+mkdir -p target/smoke
+rm -rf "$output" "$ready"
+
+java etc/smoke/StubInquireBackend.java 18181 "$ready" &
+stub=$!
+trap 'kill $stub' EXIT
+waited=0
+while [ ! -f "$ready" ]; do
+    waited=$((waited + 1))
+    if [ $waited -gt 60 ]; then
+        echo "Smoke test failed: the stub backend did not start" >&2
+        exit 1
+    fi
+    sleep 1
+done
+
+"$@" --config=etc/smoke/smoke_config.properties
+
+for query in smoke_sessions smoke_counts; do
+    if ! grep -q '"session-0"' "$output/$query.json" 2>/dev/null; then
+        echo "Smoke test failed: $output/$query.json was not written" >&2
+        exit 1
+    fi
+done
+if [ "$(grep -o '"session-' "$output/smoke_sessions.json" | wc -l)" -ne 3 ]; then
+    echo "Smoke test failed: $output/smoke_sessions.json does not hold the 3 rows of the query" >&2
+    exit 1
+fi
+echo "Smoke test passed"
@@ -31,6 +31,24 @@ public class AzureSqlExport {
 
     private static final Pattern internalCsvCellSplitter = Pattern.compile("\\s*\"\\s*,\\s*\"\\s*");
 
+    static {
+        //ESAPI, like the JDBC driver, is only loaded by this class, when --azure_sql is used
+        System.setProperty("org.owasp.esapi.logSpecial.discard", "true");
+    }
+
+    private final long exportDelay;
+
+    public AzureSqlExport() {
+        this(0);
+    }
+
+    /**
+     * @param exportDelay Milliseconds to wait before exporting each file, to slow down the requests to the SQL server.
+     */
+    public AzureSqlExport(long exportDelay) {
+        this.exportDelay = exportDelay;
+    }
+
     private static String[] getCsvCells(final String csvRow) {
         final int a = csvRow.indexOf('"'), b = csvRow.lastIndexOf('"');
         return b == a ? null : internalCsvCellSplitter.split(csvRow.substring(a + 1, b).trim(), -1);
@@ -50,201 +68,253 @@ public class AzureSqlExport {
 
     public Map<String, List<String>> load(final String serverName, final String dbName, final String userName, final String password,
             final String dataFolder) throws SQLException, IOException, InterruptedException {
-        //Create JDBC connection and statement
         //Lists to return for final report
-        final List<String> updatedTables = new ArrayList<>();
-        final List<String> skippedTables = new ArrayList<>();
-        final List<String> failedTables = new ArrayList<>();
+        final Map<String, List<String>> results = newResults();
 
 //Prepare data
         java.io.File dir = new java.io.File(dataFolder);
         java.io.File[] directoryListing = dir.listFiles((_dir, name) -> name.toLowerCase().endsWith(".csv"));
         if (directoryListing != null) {
-            final String connectionUrl =
-                    "jdbc:sqlserver://" + serverName + ":1433;" +
-                            "database=" + dbName + ";" +
-                            "user=" + userName + ";" +
-                            "password=" + password + ";" +
-                            "encrypt=true;" +
-                            "trustServerCertificate=false;" +
-                            "hostNameInCertificate=*.database.windows.net;" +
-                            "loginTimeout=30;";
-
-            //System.out.println("connectionUrl: " + connectionUrl);
-            
-            //Iterate over each *.json file in the directory
-            for (java.io.File child : directoryListing) {
+            final String connectionUrl = connectionUrl(serverName, dbName, userName, password);
 
+            //Iterate over each *.csv file in the directory
+            for (java.io.File child : directoryListing) {
                 if (child.isFile()) {
-                    //Sleep to slow down requests to SQL server
-                    Thread.sleep(1000);
+                    exportFile(connectionUrl, child, results);
+                }
+            }
+        }
 
-                    System.out.println("------- Processed file: " + child + " -------");
-                    
-                    String[] nameElements = child.getName().split("\\.");
-
-                    //Get name of sheet from file name, without extensions. Then cut to max allowed table name length
-                    Encoder encoder = ESAPI.encoder();
-                    OracleCodec oracleCodec = new OracleCodec();
-                    String tableName =
-                            encoder.encodeForSQL(
-                                    oracleCodec,
-                                    nameElements[0].substring(0, Math.min(nameElements[0].length(), 127))
-                            );
-
-
-                    ArrayList<String[]> csvData = new ArrayList<>();
-                    //Parse CSV
-                    try (BufferedReader br = new BufferedReader(new FileReader(child.getAbsolutePath(), StandardCharsets.UTF_8))) {
-                        String[] differentLengthRow = null;
-                        String line;
-                        while ((line = br.readLine()) != null) {
-                            final String[] row = getCsvCells(line);
-                            if (row == null) continue;
-                            if (differentLengthRow == null) differentLengthRow = row;
-                            else if (differentLengthRow.length != row.length) {
-                                System.out.println("Different numbers of cells, " + differentLengthRow.length + ':' +Arrays.toString(differentLengthRow) + " and " + row.length + ':' +Arrays.toString(row));
-                                differentLengthRow = row;
-                            }
-                            csvData.add(row);
-                        }
-                    } catch (FileNotFoundException e) {
-                        failedTables.add(tableName);
-                        System.out.println(e.getMessage());
-                        continue;
-                    }
+        return results;
+    }
+
+    /**
+     * @return the lists of updated, skipped and failed tables filled by {@link AzureSqlExport#exportFile}.
+     */
+    public static Map<String, List<String>> newResults() {
+        return Map.of(
+                "updated", new ArrayList<>(),
+                "skipped", new ArrayList<>(),
+                "failed", new ArrayList<>()
+        );
+    }
+
+    /**
+     * @param serverName The name of the server as it appears in the Azure SQL Database overview.
+     * @param dbName     The name of the database as it appears in the Azure SQL Database overview.
+     * @param userName   Database username with permissions to create tables and add data.
+     * @param password   Password for the Azure user.
+     * @return the JDBC URL of the database.
+     */
+    public static String connectionUrl(final String serverName, final String dbName, final String userName, final String password) {
+        return "jdbc:sqlserver://" + serverName + ":1433;" +
+                "database=" + dbName + ";" +
+                "user=" + userName + ";" +
+                "password=" + password + ";" +
+                "encrypt=true;" +
+                "trustServerCertificate=false;" +
+                "hostNameInCertificate=*.database.windows.net;" +
+                "loginTimeout=30;";
+    }
+
+    /**
+     * @param serverName The name of the server as it appears in the Azure SQL Database overview.
+     * @param dbName     The name of the database as it appears in the Azure SQL Database overview.
+     * @param userName   Database username with permissions to create tables and add data.
+     * @param password   Password for the Azure user.
+     * @param exportDelay Milliseconds to wait before exporting each file, see {@link AzureSqlExport#AzureSqlExport(long)}.
+     * @param results    Filled as by {@link AzureSqlExport#exportFile}.
+     * @return an exporter inserting each report into the database, see {@link AzureSqlExport#exportFile}. A table whose
+     * export throws is added to the failed list before the exception is passed on.
+     */
+    public static ExportPipeline.FileExporter fileExporter(final String serverName, final String dbName, final String userName, final String password, final long exportDelay, final Map<String, List<String>> results) {
+        final AzureSqlExport azureSqlExport = new AzureSqlExport(exportDelay);
+        final String connectionUrl = connectionUrl(serverName, dbName, userName, password);
+        return file -> {
+            try {
+                azureSqlExport.exportFile(connectionUrl, file, results);
+            } catch (SQLException | IOException | RuntimeException e) {
+                results.get("failed").add(tableName(file));
+                throw e;
+            }
+        };
+    }
 
+    /**
+     * @return the name of the table of a report: the name of its file without extensions, cut to the maximum table name length.
+     */
+    private static String tableName(final java.io.File child) {
+        String[] nameElements = child.getName().split("\\.");
+        Encoder encoder = ESAPI.encoder();
+        OracleCodec oracleCodec = new OracleCodec();
+        return encoder.encodeForSQL(
+                oracleCodec,
+                nameElements[0].substring(0, Math.min(nameElements[0].length(), 127))
+        );
+    }
 
-                    //Get column names and data types
-                    Map<String, String> columnMap = new LinkedHashMap<>();
+    /**
+     * Inserts the rows of one report into the table named after the file, creating the table if needed.
+     * @param connectionUrl Returned by {@link AzureSqlExport#connectionUrl}.
+     * @param child         The report, in csv format.
+     * @param results       The name of the table is added to the updated, skipped or failed list.
+     * @throws SQLException         Data file format incorrect or corrupted
+     * @throws IOException          Report file not readable
+     * @throws InterruptedException Interrupted while slowing down the requests
+     */
+    public void exportFile(final String connectionUrl, final java.io.File child, final Map<String, List<String>> results) throws SQLException, IOException, InterruptedException {
+        //Sleep to slow down requests to SQL server
+        if (exportDelay > 0) {
+            Thread.sleep(exportDelay);
+        }
 
-                    String[] columnNames = csvData.size() > 0 ? csvData.get(0) : new String[0];
+        System.out.println("------- Processed file: " + child + " -------");
+        
+        Encoder encoder = ESAPI.encoder();
+        OracleCodec oracleCodec = new OracleCodec();
+        String tableName = tableName(child);
+
+
+        ArrayList<String[]> csvData = new ArrayList<>();
+        //Parse CSV
+        try (BufferedReader br = new BufferedReader(new FileReader(child.getAbsolutePath(), StandardCharsets.UTF_8))) {
+            String[] differentLengthRow = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                final String[] row = getCsvCells(line);
+                if (row == null) continue;
+                if (differentLengthRow == null) differentLengthRow = row;
+                else if (differentLengthRow.length != row.length) {
+                    System.out.println("Different numbers of cells, " + differentLengthRow.length + ':' +Arrays.toString(differentLengthRow) + " and " + row.length + ':' +Arrays.toString(row));
+                    differentLengthRow = row;
+                }
+                csvData.add(row);
+            }
+        } catch (FileNotFoundException e) {
+            results.get("failed").add(tableName);
+            System.out.println(e.getMessage());
+            return;
+        }
 
-                    Connection connection = DriverManager.getConnection(connectionUrl);
-                    Statement statement = connection.createStatement();
 
-                    // Assign data types
-                    for (int i = 0; i < columnNames.length; i++) {
-                        String dataType;
-                        final String[] randomRow = csvData.get(ThreadLocalRandom.current().nextInt(1, csvData.size()));
-                        String randomSample = randomRow[i];
-                        Matcher annotationsMatcher = this.regexAdorners.matcher(randomSample);
-                        String annotationType = "";
-                        if (annotationsMatcher.matches()) {
-                            annotationType = annotationsMatcher.group(1).equals(":a:") ? "s" : annotationsMatcher.group(2);
-                        }
-                        if (annotationType.equals("dt") || columnNames[i].equals("date") || this.regexDate.matcher(randomSample).matches()) {
-                            dataType = "date";
-                        } else if (annotationType.equals("n") || columnNames[i].equals("count") || this.regexInt.matcher(randomSample).matches()) {
-                            dataType = "int";
-                        } else if (annotationType.equals("f") || this.regexFloat.matcher(randomSample).matches()) {
-                            dataType = "float";
-                        } else if (annotationType.equals("b") || this.regexBool.matcher(randomSample).matches()) {
-                            dataType = "bit";
-                        } else {
-                            dataType = "nvarchar(max)";
-                        }
+        //Get column names and data types
+        Map<String, String> columnMap = new LinkedHashMap<>();
 
-                        //Enquote and cut column names to max length allowed
-                        columnNames[i] = encoder.encodeForSQL(
-                                oracleCodec,
-                                statement.enquoteIdentifier(columnNames[i].substring(0, Math.min(columnNames[i].length(), 25)), true)
-                        );
+        String[] columnNames = csvData.size() > 0 ? csvData.get(0) : new String[0];
 
-                        columnMap.put(columnNames[i], dataType);
-                    }
-                    System.out.println("columnMap: " + columnMap);
-                    //columnMap: {"s:id"=nvarchar(max), "s:ContFrom"=nvarchar(max), "s:TransId"=nvarchar(max), "dt:Serverdt"=nvarchar(max), "dt:End"=nvarchar(max), "dt:Date"=nvarchar(max), "n:Duration"=int, "s:UserInput"=nvarchar(max), "s:AnswerText"=nvarchar(max)}
+        try (Connection connection = DriverManager.getConnection(connectionUrl);
+             Statement statement = connection.createStatement()) {
+
+            // Assign data types
+            for (int i = 0; i < columnNames.length; i++) {
+                String dataType;
+                final String[] randomRow = csvData.get(ThreadLocalRandom.current().nextInt(1, csvData.size()));
+                String randomSample = randomRow[i];
+                Matcher annotationsMatcher = this.regexAdorners.matcher(randomSample);
+                String annotationType = "";
+                if (annotationsMatcher.matches()) {
+                    annotationType = annotationsMatcher.group(1).equals(":a:") ? "s" : annotationsMatcher.group(2);
+                }
+                if (annotationType.equals("dt") || columnNames[i].equals("date") || this.regexDate.matcher(randomSample).matches()) {
+                    dataType = "date";
+                } else if (annotationType.equals("n") || columnNames[i].equals("count") || this.regexInt.matcher(randomSample).matches()) {
+                    dataType = "int";
+                } else if (annotationType.equals("f") || this.regexFloat.matcher(randomSample).matches()) {
+                    dataType = "float";
+                } else if (annotationType.equals("b") || this.regexBool.matcher(randomSample).matches()) {
+                    dataType = "bit";
+                } else {
+                    dataType = "nvarchar(max)";
+                }
+
+                //Enquote and cut column names to max length allowed
+                columnNames[i] = encoder.encodeForSQL(
+                        oracleCodec,
+                        statement.enquoteIdentifier(columnNames[i].substring(0, Math.min(columnNames[i].length(), 25)), true)
+                );
+
+                columnMap.put(columnNames[i], dataType);
+            }
+            System.out.println("columnMap: " + columnMap);
+            //columnMap: {"s:id"=nvarchar(max), "s:ContFrom"=nvarchar(max), "s:TransId"=nvarchar(max), "dt:Serverdt"=nvarchar(max), "dt:End"=nvarchar(max), "dt:Date"=nvarchar(max), "n:Duration"=int, "s:UserInput"=nvarchar(max), "s:AnswerText"=nvarchar(max)}
+        
+            // If file is not empty write data:
+            if (csvData.size() > 0) {
+                //Create table if it doesn't exist
+                String columnTypes = columnMap.entrySet()
+                        .stream()
+                        .map(e -> e.getKey() + " " + e.getValue())
+                        .collect(Collectors.joining(", ")).trim();
+                String makeTableQuery =
+                        "IF (NOT EXISTS (SELECT * FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = '" + tableName + "'))\n" +
+                                "BEGIN CREATE TABLE " + tableName + " (" + columnTypes + ") END";
+
+                System.out.println("makeTableQuery: " + makeTableQuery);
+                // makeTableQuery:
+                // IF (NOT EXISTS (SELECT * FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'AnswerLog'))
+                // BEGIN CREATE TABLE AnswerLog ("s:id" TEXT, "s:ContFrom" TEXT, "s:TransId" TEXT, "dt:Serverdt" TEXT, "dt:End" TEXT, "dt:Date" TEXT, "n:Duration" INT, "s:UserInput" TEXT, "s:AnswerText" TEXT) END
+            
+                int result = statement.executeUpdate(makeTableQuery);
+                System.out.println(result > -1 ? "Table " + tableName + " already exists." : "Making table " + tableName + ".");
+
+                //This will create a chain of interrogation marks as placeholders for the prepared statement, e.g., (?, ?, ?)
+                String valuesPlaceholderChain = "(" + ("?,".repeat(columnNames.length)).substring(0, (columnNames.length * 2) - 1) + ")";
+
+                //Append data query
+                String insertDataQuery = "INSERT INTO " + tableName + "(" + String.join(", ", columnNames) + ") VALUES " + valuesPlaceholderChain;
+            
+                // System.out.println("valuesPlaceholderChain: " + valuesPlaceholderChain);
+                // valuesPlaceholderChain: (?,?,?,?,?,?,?,?,?)
+                System.out.println("insertDataQuery: " + insertDataQuery);
+                // insertDataQuery: INSERT INTO AnswerLog("s:id","s:ContFrom","s:TransId","dt:Serverdt","dt:End","dt:Date","n:Duration","s:UserInput","s:AnswerText") VALUES (?,?,?,?,?,?,?,?,?)
+            
+                //Get Row data
+                try (SQLServerPreparedStatement preparedStatement = (SQLServerPreparedStatement) connection.prepareStatement(insertDataQuery)) {
+                    //Insert data to prepared statement
+
+                    for (int j = 1; j < csvData.size(); j++) {
+                        String[] rowData = csvData.get(j);
+                
+                        //System.out.println("------- csvData " + j + " -------");
+                
+                        for (int k = 0; k < rowData.length; k++) {
+                            String cellData = rowData[k];
+                            String dataType = columnMap.get(columnNames[k]);
                     
-                    // If file is not empty write data:
-                    if (csvData.size() > 0) {
-                        //Create table if it doesn't exist
-                        String columnTypes = columnMap.entrySet()
-                                .stream()
-                                .map(e -> e.getKey() + " " + e.getValue())
-                                .collect(Collectors.joining(", ")).trim();
-                        String makeTableQuery =
-                                "IF (NOT EXISTS (SELECT * FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = '" + tableName + "'))\n" +
-                                        "BEGIN CREATE TABLE " + tableName + " (" + columnTypes + ") END";
-
-                        System.out.println("makeTableQuery: " + makeTableQuery);
-                        // makeTableQuery:
-                        // IF (NOT EXISTS (SELECT * FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'AnswerLog'))
-                        // BEGIN CREATE TABLE AnswerLog ("s:id" TEXT, "s:ContFrom" TEXT, "s:TransId" TEXT, "dt:Serverdt" TEXT, "dt:End" TEXT, "dt:Date" TEXT, "n:Duration" INT, "s:UserInput" TEXT, "s:AnswerText" TEXT) END
-                        
-                        int result = statement.executeUpdate(makeTableQuery);
-                        System.out.println(result > -1 ? "Table " + tableName + " already exists." : "Making table " + tableName + ".");
-
-                        //This will create a chain of interrogation marks as placeholders for the prepared statement, e.g., (?, ?, ?)
-                        String valuesPlaceholderChain = "(" + ("?,".repeat(columnNames.length)).substring(0, (columnNames.length * 2) - 1) + ")";
-
-                        //Append data query
-                        String insertDataQuery = "INSERT INTO " + tableName + "(" + String.join(", ", columnNames) + ") VALUES " + valuesPlaceholderChain;
-                        
-                        // System.out.println("valuesPlaceholderChain: " + valuesPlaceholderChain);
-                        // valuesPlaceholderChain: (?,?,?,?,?,?,?,?,?)
-                        System.out.println("insertDataQuery: " + insertDataQuery);
-                        // insertDataQuery: INSERT INTO AnswerLog("s:id","s:ContFrom","s:TransId","dt:Serverdt","dt:End","dt:Date","n:Duration","s:UserInput","s:AnswerText") VALUES (?,?,?,?,?,?,?,?,?)
-                        
-                        //Get Row data
-                        SQLServerPreparedStatement preparedStatement = (SQLServerPreparedStatement) connection.prepareStatement(insertDataQuery);
-                        //Insert data to prepared statement
-
-                        for (int j = 1; j < csvData.size(); j++) {
-                            String[] rowData = csvData.get(j);
-                            
-                            //System.out.println("------- csvData " + j + " -------");
-                            
-                            for (int k = 0; k < rowData.length; k++) {
-                                String cellData = rowData[k];
-                                String dataType = columnMap.get(columnNames[k]);
-                                
-                                //System.out.println("cellData " + k + ":" + cellData + ", dataType:" + dataType + ", columnName:" + columnNames[k]);
-
-                                switch (dataType) {
-                                    case "date":
-                                        preparedStatement.setDate(k + 1, java.sql.Date.valueOf(cellData));
-                                        break;
-                                    case "float":
-                                        preparedStatement.setFloat(k + 1, Float.parseFloat(cellData));
-                                        break;
-                                    case "bit":
-                                        preparedStatement.setBoolean(k + 1, Boolean.parseBoolean(cellData));
-                                        break;
-                                    case "int":
-                                        preparedStatement.setInt(k + 1, Integer.parseInt(cellData));
-                                        break;
-                                    default: //text, varchar, nvarchar...:
-                                        preparedStatement.setNString(k + 1, cellData);
-                                }
+                            //System.out.println("cellData " + k + ":" + cellData + ", dataType:" + dataType + ", columnName:" + columnNames[k]);
+
+                            switch (dataType) {
+                                case "date":
+                                    preparedStatement.setDate(k + 1, java.sql.Date.valueOf(cellData));
+                                    break;
+                                case "float":
+                                    preparedStatement.setFloat(k + 1, Float.parseFloat(cellData));
+                                    break;
+                                case "bit":
+                                    preparedStatement.setBoolean(k + 1, Boolean.parseBoolean(cellData));
+                                    break;
+                                case "int":
+                                    preparedStatement.setInt(k + 1, Integer.parseInt(cellData));
+                                    break;
+                                default: //text, varchar, nvarchar...:
+                                    preparedStatement.setNString(k + 1, cellData);
                             }
-                            preparedStatement.addBatch();
                         }
+                        preparedStatement.addBatch();
+                    }
 
 
-                        //Execute statement
-                        int[] rowResults = preparedStatement.executeBatch();
-                        System.out.println("Done updating table. " + tableName + ". Modified rows: " + rowResults.length);
-                        updatedTables.add(tableName);
-                        preparedStatement.close();
-                        connection.close();
-
-                    } else {
-                        //If file empty, skip.
-                        skippedTables.add(tableName);
-                        System.out.println("Table: " + tableName + " was not created or updates because the source file has no data. Please check the report data and the queries on Inquire.");
-                    }
+                    //Execute statement
+                    int[] rowResults = preparedStatement.executeBatch();
+                    System.out.println("Done updating table. " + tableName + ". Modified rows: " + rowResults.length);
+                    results.get("updated").add(tableName);
                 }
-
+            } else {
+                //If file empty, skip.
+                results.get("skipped").add(tableName);
+                System.out.println("Table: " + tableName + " was not created or updates because the source file has no data. Please check the report data and the queries on Inquire.");
             }
         }
-
-
-        return Map.of(
-                "updated", updatedTables,
-                "skipped", skippedTables,
-                "failed", failedTables
-        );
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package inquireetl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import inquireetl.inquirehandler.InquireRest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The files the tool keeps between runs, in the cacheDir folder. Each kind of data has a subfolder, and each entry
+ * a JSON file named after the hash of its key, so backend URLs and LDS names never need escaping.
+ */
+public class CacheStore {
+
+    private static final ObjectMapper mapper = InquireRest.getObjectMapper();
+
+    private final File directory;
+
+    /**
+     * @param directory The cacheDir folder, created when the first entry is written.
+     */
+    public CacheStore(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param kind The subfolder of this kind of data, e.g. "catalog".
+     * @param keyParts The parts of the key of the entry, e.g. backend URL and LDS name.
+     * @return the file of the entry, which may not exist yet.
+     */
+    public File file(String kind, String... keyParts) {
+        return new File(new File(directory, kind), sha256(String.join("\n", keyParts)) + ".json");
+    }
+
+    /**
+     * @return the entry read from the file, null if there is none or it cannot be read.
+     */
+    public <T> T read(File file, Class<T> type) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return mapper.readValue(file, type);
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable cache file " + file.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry to a temporary file and moves it in place, so a run reading the entry at the same time never sees half of it.
+     */
+    public void write(File file, Object value) throws IOException {
+        final Path target = file.toPath();
+        Files.createDirectories(target.getParent());
+        final Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try {
+            mapper.writeValue(temp.toFile(), value);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the UTF-8 text as hexadecimal string.
+     */
+    public static String sha256(String text) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package inquireetl;
+
+import inquireetl.inquirehandler.QueryFailureException;
+
+import javax.ws.rs.ServerErrorException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Limits the queries in flight on one Inquire backend, over all configs of the run with the same settings, with additive increase and
+ * multiplicative decrease: every submit or poll answered faster than the latency threshold raises the limit by
+ * 1/limit, so by about one query per limit's worth of healthy requests, up to the maximum; a timeout, a 5xx response
+ * or a failed query halves it, at most once per {@link ConcurrencyLimiter#DECREASE_INTERVAL} so one burst of errors
+ * counts once. The latency of a poll leaves out the time Inquire may hold it waiting for news. The limit starts at 1.
+ */
+public class ConcurrencyLimiter {
+
+    private static final long DECREASE_INTERVAL = 1000;
+
+    // By backend, maximum and latency threshold, so a config never runs with the settings of another
+    private static final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final String backendUrl;
+    private final int max;
+    private final long latencyThreshold;
+    private double limit = 1;
+    private int inFlight = 0;
+    private long lastDecrease = 0;
+
+    private ConcurrencyLimiter(String backendUrl, int max, long latencyThreshold) {
+        this.backendUrl = backendUrl;
+        this.max = max;
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    /**
+     * @param max Highest limit, e.g. maxConcurrentQueries.
+     * @param latencyThreshold Milliseconds a submit or poll may take and still count as healthy.
+     * @return the limiter of the backend with these settings, shared by the configs using the backend with the same
+     * settings; configs with other settings get a limiter of their own.
+     */
+    public static ConcurrencyLimiter forBackend(String backendUrl, int max, long latencyThreshold) {
+        return limiters.computeIfAbsent(backendUrl + "\n" + max + "\n" + latencyThreshold, key -> new ConcurrencyLimiter(backendUrl, max, latencyThreshold));
+    }
+
+    /**
+     * Takes a place for a query to submit.
+     * @return false if the backend has as many queries in flight as the limit allows.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Gives back the place of a query that finished, failed, or is waiting to be submitted again.
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Waits until a query of the backend is released, at most the timeout.
+     */
+    public synchronized void awaitRelease(long timeoutMillis) throws InterruptedException {
+        if (inFlight >= (int) limit) {
+            wait(timeoutMillis);
+        }
+    }
+
+    /**
+     * @param latencyMillis How long a successful submit or poll took, without the time Inquire may hold a poll.
+     */
+    public synchronized void onSuccess(long latencyMillis) {
+        if (latencyMillis <= latencyThreshold && limit < max) {
+            limit = Math.min(max, limit + 1 / limit);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Halves the limit if the failure of a submit or poll shows the backend is overloaded.
+     * @return whether the failure counts as overload.
+     */
+    public synchronized boolean onFailure(Exception ex) {
+        if (!isOverload(ex)) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - lastDecrease >= DECREASE_INTERVAL) {
+            lastDecrease = now;
+            limit = Math.max(1, limit / 2);
+            System.out.println("Inquire at " + backendUrl + " is overloaded (" + ex.getMessage() + "), lowering its concurrent queries to " + (int) limit);
+        }
+        return true;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    private static boolean isOverload(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ServerErrorException || cause instanceof QueryFailureException
+                    || cause instanceof SocketTimeoutException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+package inquireetl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the configs of a run on a pool of worker threads. A worker takes the next config whose Inquire backend runs
+ * fewer configs than allowed per backend, so a busy backend does not hold back the configs of the others, and exports
+ * to one Google Sheet or Azure SQL database are limited the same way by {@link ConfigWorkers#acquireSink}.
+ * A failing config is reported and the others go on.
+ */
+public class ConfigWorkers {
+
+    private final int workers;
+    private final int perBackend;
+    private final int perSink;
+    // Configs not started yet, and the number of configs running on each backend
+    private final LinkedList<Config> pending = new LinkedList<>();
+    private final Map<String, Integer> running = new HashMap<>();
+    private final Map<String, Semaphore> sinks = new ConcurrentHashMap<>();
+    private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param workers Number of configs run at the same time.
+     * @param perBackend Number of configs run at the same time on one Inquire backend.
+     * @param perSink Number of configs exporting to one Google Sheet or Azure SQL database at the same time.
+     */
+    public ConfigWorkers(int workers, int perBackend, int perSink) {
+        this.workers = workers;
+        this.perBackend = perBackend;
+        this.perSink = perSink;
+    }
+
+    /**
+     * Queues a config, to be run by {@link ConfigWorkers#run()}.
+     * @param name Name of the config in the error messages.
+     * @param backendUrl Inquire backend of the config.
+     */
+    public synchronized void add(String name, String backendUrl, ConfigTask task) {
+        pending.add(new Config(name, backendUrl, task));
+    }
+
+    /**
+     * Runs the queued configs and waits until all of them are done.
+     * @return the names of the configs that failed.
+     */
+    public List<String> run() throws InterruptedException {
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < Math.min(workers, pending.size()); i++) {
+            final Thread thread = new Thread(this::work, "inquire-config-" + (i + 1));
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return failed;
+    }
+
+    /**
+     * Waits until fewer than the allowed configs export to the sink, and takes a place for this one.
+     * @param sink The Google Sheet or Azure SQL database exported to.
+     */
+    public void acquireSink(String sink) throws InterruptedException {
+        sinks.computeIfAbsent(sink, s -> new Semaphore(perSink)).acquire();
+    }
+
+    /**
+     * Gives back the place taken by {@link ConfigWorkers#acquireSink}.
+     */
+    public void releaseSink(String sink) {
+        sinks.get(sink).release();
+    }
+
+    /**
+     * @return the exporter, waiting while the allowed configs export to the sink, see {@link ConfigWorkers#acquireSink}.
+     */
+    public ExportPipeline.FileExporter limitSink(String sink, ExportPipeline.FileExporter exporter) {
+        return file -> {
+            acquireSink(sink);
+            try {
+                exporter.export(file);
+            } finally {
+                releaseSink(sink);
+            }
+        };
+    }
+
+    private void work() {
+        try {
+            for (Config config = next(); config != null; config = next()) {
+                try {
+                    config.task.run();
+                } catch (Exception e) {
+                    failed.add(config.name);
+                    System.out.println("ERROR: Could not process " + config.name + ": " + e.getClass() + " ----- " + e.getMessage());
+                    e.printStackTrace(System.out);
+                } finally {
+                    done(config);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the first pending config whose backend has room for it, waiting until there is one; null once all configs started.
+     */
+    private synchronized Config next() throws InterruptedException {
+        while (!pending.isEmpty()) {
+            for (Iterator<Config> iterator = pending.iterator(); iterator.hasNext(); ) {
+                final Config config = iterator.next();
+                if (running.getOrDefault(config.backendUrl, 0) < perBackend) {
+                    iterator.remove();
+                    running.merge(config.backendUrl, 1, Integer::sum);
+                    return config;
+                }
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private synchronized void done(Config config) {
+        running.merge(config.backendUrl, -1, Integer::sum);
+        notifyAll();
+    }
+
+    /**
+     * Processes one config.
+     */
+    public interface ConfigTask {
+        void run() throws Exception;
+    }
+
+    private static class Config {
+        private final String name;
+        private final String backendUrl;
+        private final ConfigTask task;
+
+        private Config(String name, String backendUrl, ConfigTask task) {
+            this.name = name;
+            this.backendUrl = backendUrl;
+            this.task = task;
+        }
+    }
+}
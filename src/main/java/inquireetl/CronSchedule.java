@@ -0,0 +1,138 @@
+package inquireetl;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * A cron expression with the five fields minute, hour, day of month, month and day of week, in the time zone of the
+ * system. Each field is '*', a value, a range 'a-b' or a list of these separated by commas, each optionally followed
+ * by a step '/n', e.g. '*&#47;5 * * * *' every five minutes or '0 6-18 * * 1-5' every hour from 6 to 18 on weekdays.
+ * Day of week 0 and 7 are both Sunday. As in cron, when both day of month and day of week are restricted a day
+ * matching either one is used.
+ */
+public class CronSchedule {
+
+    // Furthest a next time is searched for, e.g. '0 0 30 2 *' never comes
+    private static final int MAX_YEARS = 5;
+
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean anyDayOfMonth;
+    private final boolean anyDayOfWeek;
+
+    private CronSchedule(String expression, String[] fields) {
+        this.expression = expression;
+        minutes = parseField("minute", fields[0], 0, 59);
+        hours = parseField("hour", fields[1], 0, 23);
+        daysOfMonth = parseField("day of month", fields[2], 1, 31);
+        months = parseField("month", fields[3], 1, 12);
+        daysOfWeek = parseField("day of week", fields[4], 0, 7);
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+        anyDayOfMonth = fields[2].startsWith("*");
+        anyDayOfWeek = fields[4].startsWith("*");
+    }
+
+    /**
+     * @param expression Five fields separated by spaces, see {@link CronSchedule}.
+     * @throws IllegalArgumentException if the expression is not valid.
+     */
+    public static CronSchedule parse(String expression) {
+        final String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("schedule " + '"' + expression + '"' + " must have the five fields minute, hour, day of month, month and day of week.");
+        }
+        return new CronSchedule(expression.trim(), fields);
+    }
+
+    /**
+     * @return the first minute of the schedule after the given time.
+     * @throws IllegalStateException if the schedule has no minute in the next years, e.g. on the 30th of February.
+     */
+    public ZonedDateTime next(ZonedDateTime after) {
+        ZonedDateTime time = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        final ZonedDateTime limit = time.plusYears(MAX_YEARS);
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!matchesDay(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(time.getMinute())) {
+                time = time.plusMinutes(1);
+            } else {
+                return time;
+            }
+        }
+        throw new IllegalStateException("schedule " + '"' + expression + '"' + " has no time in the next " + MAX_YEARS + " years.");
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private boolean matchesDay(ZonedDateTime time) {
+        final boolean dayOfMonth = daysOfMonth.get(time.getDayOfMonth());
+        final boolean dayOfWeek = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if (anyDayOfMonth || anyDayOfWeek) {
+            return dayOfMonth && dayOfWeek;
+        }
+        return dayOfMonth || dayOfWeek;
+    }
+
+    private static BitSet parseField(String name, String field, int min, int max) {
+        final BitSet values = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            final String[] rangeAndStep = part.split("/", -1);
+            if (rangeAndStep.length > 2) {
+                throw new IllegalArgumentException("schedule " + name + " " + '"' + field + '"' + " is not valid");
+            }
+            int from;
+            int to;
+            if (rangeAndStep[0].equals("*")) {
+                from = min;
+                to = max;
+            } else {
+                final String[] range = rangeAndStep[0].split("-", -1);
+                if (range.length > 2) {
+                    throw new IllegalArgumentException("schedule " + name + " " + '"' + field + '"' + " is not valid");
+                }
+                from = parseValue(name, range[0], min, max);
+                to = range.length == 2 ? parseValue(name, range[1], min, max) : from;
+                if (to < from) {
+                    throw new IllegalArgumentException("schedule " + name + " range " + '"' + rangeAndStep[0] + '"' + " must not end before it starts.");
+                }
+                //A value with a step runs up to the end of the field, as in cron
+                if (range.length == 1 && rangeAndStep.length == 2) {
+                    to = max;
+                }
+            }
+            final int step = rangeAndStep.length == 2 ? parseValue(name + " step", rangeAndStep[1], 1, max) : 1;
+            for (int value = from; value <= to; value += step) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+
+    private static int parseValue(String name, String value, int min, int max) {
+        final int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("schedule " + name + " " + '"' + value + '"' + " is not a valid number");
+        }
+        if (parsed < min || parsed > max) {
+            throw new IllegalArgumentException("schedule " + name + " must be between " + min + " and " + max + ".");
+        }
+        return parsed;
+    }
+}
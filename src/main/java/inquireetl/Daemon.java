@@ -0,0 +1,89 @@
+package inquireetl;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the process running and runs each config on its own schedule, so the HTTP clients, the access tokens, the
+ * compiled code and the caches in memory stay warm from one run to the next. The configs due at the same minute run
+ * together as one batch, on a thread of their own so a long batch does not delay the next ones. A config whose
+ * previous run has not finished when it is due again skips that time.
+ */
+public class Daemon {
+
+    private final Map<File, CronSchedule> schedules;
+    private final BatchRunner batchRunner;
+    // Configs of the batches running
+    private final Set<File> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param schedules The schedule of each config file.
+     * @param batchRunner Runs the configs due at the same time.
+     */
+    public Daemon(Map<File, CronSchedule> schedules, BatchRunner batchRunner) {
+        this.schedules = schedules;
+        this.batchRunner = batchRunner;
+    }
+
+    /**
+     * Runs the configs on their schedules until the process is stopped.
+     */
+    public void run() throws InterruptedException {
+        final Map<File, ZonedDateTime> nextTimes = new LinkedHashMap<>();
+        final ZonedDateTime now = ZonedDateTime.now();
+        for (Map.Entry<File, CronSchedule> schedule : schedules.entrySet()) {
+            nextTimes.put(schedule.getKey(), schedule.getValue().next(now));
+            System.out.println("Scheduled " + schedule.getKey().getPath() + " at '" + schedule.getValue() + "', next run at " + nextTimes.get(schedule.getKey()));
+        }
+        while (true) {
+            final ZonedDateTime next = nextTimes.values().stream().min(ZonedDateTime::compareTo).get();
+            final long wait = Duration.between(ZonedDateTime.now(), next).toMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            //Times missed while the system was suspended are not caught up, the schedule goes on from now
+            final ZonedDateTime woken = ZonedDateTime.now();
+            final ZonedDateTime after = woken.isAfter(next) ? woken : next;
+            final List<File> batch = new ArrayList<>();
+            for (Map.Entry<File, ZonedDateTime> nextTime : nextTimes.entrySet()) {
+                if (nextTime.getValue().isAfter(next)) {
+                    continue;
+                }
+                if (running.add(nextTime.getKey())) {
+                    batch.add(nextTime.getKey());
+                } else {
+                    System.out.println("WARNING: Skipping the run of " + nextTime.getKey().getPath() + " at " + next + ", its previous run has not finished.");
+                }
+                nextTime.setValue(schedules.get(nextTime.getKey()).next(after));
+            }
+            if (!batch.isEmpty()) {
+                new Thread(() -> runBatch(batch), "inquire-batch").start();
+            }
+        }
+    }
+
+    private void runBatch(List<File> batch) {
+        try {
+            batchRunner.run(batch);
+        } catch (Exception e) {
+            System.out.println("ERROR: Could not run " + batch + ": " + e.getClass() + " ----- " + e.getMessage());
+            e.printStackTrace(System.out);
+        } finally {
+            running.removeAll(batch);
+        }
+    }
+
+    /**
+     * Runs the configs due at the same time.
+     */
+    public interface BatchRunner {
+        void run(List<File> configFiles) throws Exception;
+    }
+}
@@ -0,0 +1,68 @@
+package inquireetl;
+
+/**
+ * Chooses the esPageSize of each query from its previous runs, see {@link QueryHistory}.
+ * The throughput of a run is the page size over the mean execution time of a page. Starting from the geometric mean
+ * of the bounds, the page size is doubled or halved as long as the throughput improves; when a step makes it worse,
+ * the next run goes back halfway. Runs of a single page tell nothing about the throughput and keep the page size.
+ */
+public class EsPageSizeTuner {
+
+    private static final double STEP = 2;
+
+    private final int min;
+    private final int max;
+
+    /**
+     * @param min Smallest esPageSize to submit a query with.
+     * @param max Largest esPageSize to submit a query with.
+     */
+    public EsPageSizeTuner(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("The esPageSize bounds must be positive and the minimum cannot exceed the maximum, received " + min + " and " + max);
+        }
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @param last The last run of the query, null if there is none.
+     * @return the esPageSize of the next run.
+     */
+    public int choose(QueryHistory.Entry last) {
+        if (last != null && last.nextEsPageSize != null) {
+            return clamp(last.nextEsPageSize);
+        }
+        return clamp(Math.sqrt((double) min * max));
+    }
+
+    /**
+     * Sets the throughput of the run and the esPageSize of the next one.
+     * @param previous The run before, null if there is none.
+     * @param current The run that just finished.
+     */
+    public void tune(QueryHistory.Entry previous, QueryHistory.Entry current) {
+        if (current.esPageSize == null || current.pagesProcessed < 2 || current.meanExecutionTime <= 0) {
+            current.throughput = previous != null ? previous.throughput : null;
+            current.nextEsPageSize = previous != null ? previous.nextEsPageSize : null;
+            return;
+        }
+        current.throughput = current.esPageSize / current.meanExecutionTime;
+        final double size = current.esPageSize;
+        final double next;
+        if (previous == null || previous.esPageSize == null || previous.throughput == null || previous.esPageSize.equals(current.esPageSize)) {
+            next = size * STEP;
+        } else if (current.throughput >= previous.throughput) {
+            // Keep going in the direction that improved the throughput
+            next = current.esPageSize > previous.esPageSize ? size * STEP : size / STEP;
+        } else {
+            next = Math.sqrt(size * previous.esPageSize);
+        }
+        current.nextEsPageSize = clamp(next);
+        System.out.println("esPageSize " + current.esPageSize + " gave " + String.format("%.2f", current.throughput) + " sessions/ms, next run uses " + current.nextEsPageSize);
+    }
+
+    private int clamp(double esPageSize) {
+        return (int) Math.max(min, Math.min(max, Math.round(esPageSize)));
+    }
+}
@@ -0,0 +1,117 @@
+package inquireetl;
+
+import inquireetl.inquirehandler.SpooledResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The results of the query executions of a run, kept for the configs of the run still to come with the same backend
+ * and LDS, so an execution with the same key (see {@link ResultCache#key}) runs on Inquire once per run and its results
+ * go to every config that needs them. Configs running at the same time share an execution too: the first to need it
+ * runs it, see {@link ExecutionCoalescer#running}, and the others wait for its results.
+ * Results read from Inquire stay in their temporary files until the last config of their LDS is done.
+ */
+public class ExecutionCoalescer {
+
+    // Configs of the run not done yet, and the results kept for them, by backend and LDS
+    private final Map<String, Integer> remainingConfigs = new HashMap<>();
+    private final Map<String, Map<String, Iterable<Map<String, Object>>>> results = new HashMap<>();
+    // Executions being run by a config, completed once their results are kept or they ended without results, by LDS and key
+    private final Map<String, CompletableFuture<Void>> running = new HashMap<>();
+
+    /**
+     * Counts a config of the run, before any config runs.
+     */
+    public synchronized void plan(String backendUrl, String ldsName) {
+        remainingConfigs.merge(lds(backendUrl, ldsName), 1, Integer::sum);
+    }
+
+    /**
+     * @param key The key of the execution, see {@link ResultCache#key}.
+     * @return the results of the execution run by an earlier config of the run, null if there are none. The caller closes them when done.
+     */
+    public synchronized Iterable<Map<String, Object>> get(String backendUrl, String ldsName, String key) {
+        final Map<String, Iterable<Map<String, Object>>> ldsResults = results.get(lds(backendUrl, ldsName));
+        final Iterable<Map<String, Object>> rows = ldsResults != null ? ldsResults.get(key) : null;
+        return rows instanceof SpooledResult ? ((SpooledResult) rows).retain() : rows;
+    }
+
+    /**
+     * Called when there are no results for the execution yet, see {@link ExecutionCoalescer#get}.
+     * @param key The key of the execution, see {@link ResultCache#key}.
+     * @return a future completed once the config running the execution kept its results or gave up on it, after which
+     * the caller gets the results or runs the execution itself. Null if no other config runs it: the caller runs it
+     * and must end with {@link ExecutionCoalescer#put} or {@link ExecutionCoalescer#abandon}.
+     */
+    public synchronized CompletableFuture<Void> running(String backendUrl, String ldsName, String key) {
+        final String lds = lds(backendUrl, ldsName);
+        final Map<String, Iterable<Map<String, Object>>> ldsResults = results.get(lds);
+        if (ldsResults != null && ldsResults.containsKey(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> execution = running.get(lds + "\n" + key);
+        if (execution != null) {
+            return execution;
+        }
+        running.put(lds + "\n" + key, new CompletableFuture<>());
+        return null;
+    }
+
+    /**
+     * Ends an execution taken by {@link ExecutionCoalescer#running} without results, so the configs waiting for it run it themselves.
+     */
+    public synchronized void abandon(String backendUrl, String ldsName, String key) {
+        final CompletableFuture<Void> execution = running.remove(lds(backendUrl, ldsName) + "\n" + key);
+        if (execution != null) {
+            execution.complete(null);
+        }
+    }
+
+    /**
+     * Keeps the results of an execution if a config still to come uses the same backend and LDS, and hands them to the
+     * configs waiting for it.
+     */
+    public synchronized void put(String backendUrl, String ldsName, String key, Iterable<Map<String, Object>> rows) {
+        final String lds = lds(backendUrl, ldsName);
+        final CompletableFuture<Void> execution = running.remove(lds + "\n" + key);
+        if (remainingConfigs.getOrDefault(lds, 0) <= 1) {
+            if (execution != null) {
+                execution.complete(null);
+            }
+            return;
+        }
+        final Iterable<Map<String, Object>> previous = results.computeIfAbsent(lds, k -> new HashMap<>())
+                .put(key, rows instanceof SpooledResult ? ((SpooledResult) rows).retain() : rows);
+        if (previous instanceof SpooledResult) {
+            ((SpooledResult) previous).close();
+        }
+        if (execution != null) {
+            execution.complete(null);
+        }
+    }
+
+    /**
+     * Counts a config as done, and drops the results kept for its LDS if it was the last one.
+     */
+    public synchronized void done(String backendUrl, String ldsName) {
+        final String lds = lds(backendUrl, ldsName);
+        if (remainingConfigs.merge(lds, -1, Integer::sum) > 0) {
+            return;
+        }
+        remainingConfigs.remove(lds);
+        final Map<String, Iterable<Map<String, Object>>> ldsResults = results.remove(lds);
+        if (ldsResults != null) {
+            for (Iterable<Map<String, Object>> rows : ldsResults.values()) {
+                if (rows instanceof SpooledResult) {
+                    ((SpooledResult) rows).close();
+                }
+            }
+        }
+    }
+
+    private static String lds(String backendUrl, String ldsName) {
+        return backendUrl + "\n" + ldsName;
+    }
+}
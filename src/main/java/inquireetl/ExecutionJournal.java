@@ -0,0 +1,103 @@
+package inquireetl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The executions of an LDS submitted to Inquire and not finished yet, with their ids, kept in the {@link CacheStore}.
+ * Every change is written to the journal file right away, so when a run dies the next one can poll the executions it left
+ * running instead of submitting them again. Executions submitted more than a day ago are forgotten.
+ * All configs of the process share the journal of an LDS, so they do not overwrite each other's executions in the file.
+ */
+public class ExecutionJournal {
+
+    // Executions submitted longer ago are not worth polling, Inquire will have dropped them
+    private static final long MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    private static final Map<File, ExecutionJournal> journals = new ConcurrentHashMap<>();
+
+    private final CacheStore cacheStore;
+    private final File file;
+    private final Journal journal;
+
+    private ExecutionJournal(CacheStore cacheStore, File file, String backendUrl, String ldsName) {
+        this.cacheStore = cacheStore;
+        this.file = file;
+        final Journal stored = cacheStore.read(file, Journal.class);
+        this.journal = stored != null && stored.executions != null ? stored : new Journal();
+        final long now = System.currentTimeMillis();
+        journal.executions.values().removeIf(execution -> now - execution.submittedAt >= MAX_AGE);
+        journal.backend = backendUrl;
+        journal.lds = ldsName;
+    }
+
+    /**
+     * @return the journal of the LDS, read from the file left by earlier runs by the first config using it.
+     */
+    public static ExecutionJournal forLds(CacheStore cacheStore, String backendUrl, String ldsName) {
+        final File file = cacheStore.file("journal", backendUrl, ldsName).getAbsoluteFile();
+        return journals.computeIfAbsent(file, f -> new ExecutionJournal(cacheStore, f, backendUrl, ldsName));
+    }
+
+    /**
+     * @param key Identifies the query and the parameters it is submitted with except "to", see {@link ResultCache#key}.
+     * @return the execution an earlier run submitted with the same key and did not see finish, null if there is none.
+     */
+    public synchronized Execution get(String key) {
+        final Execution execution = journal.executions.get(key);
+        return execution != null && System.currentTimeMillis() - execution.submittedAt < MAX_AGE ? execution : null;
+    }
+
+    /**
+     * Records a submitted execution.
+     * @param to The "to" parameter the execution was submitted with, null if it had none.
+     */
+    public synchronized void put(String key, String queryName, String executionId, String to) {
+        final Execution execution = new Execution();
+        execution.id = executionId;
+        execution.query = queryName;
+        execution.to = to;
+        execution.submittedAt = System.currentTimeMillis();
+        journal.executions.put(key, execution);
+        store();
+    }
+
+    /**
+     * Forgets an execution that finished or failed.
+     */
+    public synchronized void remove(String key) {
+        if (journal.executions.remove(key) != null) {
+            store();
+        }
+    }
+
+    private void store() {
+        try {
+            cacheStore.write(file, journal);
+        } catch (IOException e) {
+            System.out.println("Could not write the execution journal " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The journal of one LDS.
+     */
+    public static class Journal {
+        public String backend;
+        public String lds;
+        public LinkedHashMap<String, Execution> executions = new LinkedHashMap<>();
+    }
+
+    /**
+     * An execution of a query on Inquire.
+     */
+    public static class Execution {
+        public String id;
+        public String query;
+        public String to;
+        public long submittedAt;
+    }
+}
@@ -0,0 +1,163 @@
+package inquireetl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Takes every query of a config through the rest of the run as soon as it finished on Inquire, while the other queries
+ * are still running: its results are written to the output files, then the files are exported to Google Sheets and
+ * Azure SQL. A query whose files could not be written is not exported. Writing and exporting run on threads of their own.
+ * The writer takes every finished query without ever making the caller wait, as the caller keeps the other queries polled;
+ * the exporter is fed through a bounded queue, so a slow export holds back the writer instead of written files piling up.
+ * A file that could not be exported is reported, see {@link ExportPipeline#getFailedExports()}.
+ */
+public class ExportPipeline {
+
+    // Queries written and waiting for the exporter; a full queue blocks the writer
+    private static final int QUEUE_SIZE = 2;
+
+    private static final Map.Entry<String, Iterable<Map<String, Object>>> END_OF_RESULTS = new AbstractMap.SimpleEntry<>(null, null);
+    private static final String END_OF_QUERIES = "";
+
+    private final List<String> separators;
+    private final String outputFolderPath;
+    private final boolean filesWritten;
+    private final boolean jsonPassthrough;
+    private final FileExporter sheetsExporter;
+    private final FileExporter sqlExporter;
+    // Unbounded, each query of the config is handed over once
+    private final BlockingQueue<Map.Entry<String, Iterable<Map<String, Object>>>> toWrite = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> toExport = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    // Queries whose output files were all written and closed
+    private final Set<String> writtenQueries = ConcurrentHashMap.newKeySet();
+    // Output files whose export threw
+    private final List<String> failedExports = Collections.synchronizedList(new ArrayList<>());
+    private final Thread writer = new Thread(this::write, "inquire-writer");
+    private final Thread exporter = new Thread(this::export, "inquire-exporter");
+
+    /**
+     * @param separators One output file per separator, see {@link LocalFile#output(String, Map.Entry, String, boolean)}.
+     * @param outputFolderPath The folder of the output files.
+     * @param filesWritten Whether the files were written while the queries ran, see streamResults. The results then only need to be closed.
+     * @param jsonPassthrough See {@link LocalFile#output(String, Map.Entry, String, boolean)}.
+     * @param sheetsExporter Exports the JSON file of a query to Google Sheets, null not to export it.
+     * @param sqlExporter Exports the CSV file of a query to Azure SQL, null not to export it.
+     */
+    public ExportPipeline(List<String> separators, String outputFolderPath, boolean filesWritten, boolean jsonPassthrough, FileExporter sheetsExporter, FileExporter sqlExporter) {
+        this.separators = separators;
+        this.outputFolderPath = outputFolderPath;
+        this.filesWritten = filesWritten;
+        this.jsonPassthrough = jsonPassthrough;
+        this.sheetsExporter = sheetsExporter;
+        this.sqlExporter = sqlExporter;
+        writer.start();
+        exporter.start();
+    }
+
+    /**
+     * Hands the results of a finished query to the pipeline, which closes them once written. Never waits for the writer.
+     */
+    public void accept(String queryName, Iterable<Map<String, Object>> results) {
+        toWrite.add(new AbstractMap.SimpleEntry<>(queryName, results));
+    }
+
+    /**
+     * Waits until every query handed to the pipeline has been written and exported.
+     */
+    public void finish() throws InterruptedException {
+        toWrite.put(END_OF_RESULTS);
+        writer.join();
+        exporter.join();
+    }
+
+    /**
+     * @return whether all output files of the query were written and closed; only complete after {@link ExportPipeline#finish()}.
+     */
+    public boolean isWritten(String queryName) {
+        return writtenQueries.contains(queryName);
+    }
+
+    /**
+     * @return the paths of the output files that could not be exported; only complete after {@link ExportPipeline#finish()}.
+     */
+    public List<String> getFailedExports() {
+        return failedExports;
+    }
+
+    private void write() {
+        try {
+            for (Map.Entry<String, Iterable<Map<String, Object>>> report = toWrite.take(); report != END_OF_RESULTS; report = toWrite.take()) {
+                boolean written = true;
+                if (!filesWritten) {
+                    try {
+                        for (String separator : separators) {
+                            LocalFile.output(separator, report, outputFolderPath, jsonPassthrough);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        written = false;
+                        System.out.println("ERROR: Could not write the results of query " + report.getKey() + ": " + e.getMessage());
+                    }
+                }
+                //Results read from Inquire are kept in temporary files until they have been written
+                if (report.getValue() instanceof Closeable) {
+                    try {
+                        ((Closeable) report.getValue()).close();
+                    } catch (IOException e) {
+                        System.out.println("Could not delete the temporary results of query " + report.getKey() + ": " + e.getMessage());
+                    }
+                }
+                if (written) {
+                    writtenQueries.add(report.getKey());
+                    toExport.put(report.getKey());
+                }
+            }
+            toExport.put(END_OF_QUERIES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void export() {
+        try {
+            for (String queryName = toExport.take(); !queryName.equals(END_OF_QUERIES); queryName = toExport.take()) {
+                if (sheetsExporter != null) {
+                    exportFile(sheetsExporter, LocalFile.outputFile("json", queryName, outputFolderPath));
+                }
+                if (sqlExporter != null) {
+                    exportFile(sqlExporter, LocalFile.outputFile(",", queryName, outputFolderPath));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void exportFile(FileExporter fileExporter, File file) throws InterruptedException {
+        try {
+            fileExporter.export(file);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            failedExports.add(file.getPath());
+            System.out.println("ERROR: Could not export " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exports the output file of one query. Throws if the export failed, after adding the file to the failed list of its results.
+     */
+    public interface FileExporter {
+        void export(File file) throws Exception;
+    }
+}
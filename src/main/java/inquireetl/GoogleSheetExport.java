@@ -1,9 +1,6 @@
 package inquireetl;
 
-import com.github.cliftonlabs.json_simple.JsonArray;
-import com.github.cliftonlabs.json_simple.JsonException;
-import com.github.cliftonlabs.json_simple.JsonObject;
-import com.github.cliftonlabs.json_simple.Jsoner;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
@@ -13,16 +10,16 @@ import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.sheets.v4.Sheets;
 import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.api.services.sheets.v4.model.*;
+import inquireetl.inquirehandler.ResultCursor;
+import inquireetl.inquirehandler.ResultRow;
+import inquireetl.inquirehandler.ResultSchema;
 import org.jsoup.Jsoup;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
 import java.security.GeneralSecurityException;
 import java.util.*;
-import java.util.stream.Stream;
 
 
 public class GoogleSheetExport {
@@ -43,17 +40,45 @@ public class GoogleSheetExport {
     public static Map<String, List<String>> load(String credentialsPath, String appName, String spreadsheetId, String dataFolder) throws IOException, GeneralSecurityException, InterruptedException {
 
         // These three maps are returned with the results of the export operation
-        List<String> updatedSheets = new ArrayList<>();
-        List<String> skippedSheets = new ArrayList<>();
-        List<String> failedSheets = new ArrayList<>();
+        Map<String, List<String>> results = newResults();
 
-        // Spreadsheet range is the name of the sheet (corresponds to query) within the workbook (corresponds to config file) where the data is appended.
-        // For example, workbook at https://docs.google.com/spreadsheets/d/{spreadsheetID} is defined in file example_config.properties.
-        // The application will look in {dataFolder/example/} and read each *.json file there, for example, total_users_by_date.json.
-        // This will then create a sheet called total_users_by_date in the workbook above.
-        String spreadsheetRange;
-        Boolean[] append = {false};
+        Sheets sheetsService = connect(credentialsPath, appName);
+
+//Iterate over each *.json file in the directory
+        java.io.File dir = new java.io.File(dataFolder);
+        java.io.File[] directoryListing = dir.listFiles((_dir, name) -> name.toLowerCase().endsWith(".json"));
+        if (directoryListing != null) {
+            for (java.io.File child : directoryListing) {
+                if (child.isFile()) {
+                    exportFile(sheetsService, spreadsheetId, child, results);
+                }
+            }
+        } else {
+            //handle if dir isn't really a dir
+            throw new IOException("Directory does not contain files.");
+        }
+        return results;
+    }
+
+    /**
+     * @return the lists of updated, skipped and failed sheets filled by {@link GoogleSheetExport#exportFile}.
+     */
+    public static Map<String, List<String>> newResults() {
+        return Map.of(
+                "updated", new ArrayList<>(),
+                "skipped", new ArrayList<>(),
+                "failed", new ArrayList<>()
+        );
+    }
 
+    /**
+     * @param credentialsPath Path to the credentials.json file for Google Authentication.
+     * @param appName Name of the Google Cloud Application to which the Service Account belongs.
+     * @return the client of the Google Sheets API.
+     * @throws IOException Credentials file not found
+     * @throws GeneralSecurityException Credentials file not accepted
+     */
+    public static Sheets connect(String credentialsPath, String appName) throws IOException, GeneralSecurityException {
         // Build a new authorized API client service.
         NetHttpTransport HTTP_TRANSPORT;
 
@@ -64,133 +89,152 @@ public class GoogleSheetExport {
                 .createScoped(Collections.singleton(SheetsScopes.SPREADSHEETS));
 
         //Create Service Client for Google Sheets API
-        Sheets sheetsService = new Sheets.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
+        return new Sheets.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
                 .setApplicationName(appName)
                 .build();
+    }
 
-//Iterate over each *.json file in the directory
-        java.io.File dir = new java.io.File(dataFolder);
-        java.io.File[] directoryListing = dir.listFiles((_dir, name) -> name.toLowerCase().endsWith(".json"));
-        if (directoryListing != null) {
-            for (java.io.File child : directoryListing) {
+    /**
+     * Connects to the Google Sheets API. The Google client is only loaded by this class, when --google_sheets is used.
+     * @param credentialsPath Path to the credentials.json file for Google Authentication.
+     * @param appName Name of the Google Cloud Application to which the Service Account belongs.
+     * @param spreadsheetId The Id of the Google Sheet document.
+     * @param results Filled as by {@link GoogleSheetExport#exportFile}.
+     * @return an exporter appending each report to the document, see {@link GoogleSheetExport#exportFile}. A sheet whose
+     * export throws is added to the failed list before the exception is passed on.
+     * @throws IOException Credentials file not found
+     * @throws GeneralSecurityException Credentials file not accepted
+     */
+    public static ExportPipeline.FileExporter fileExporter(String credentialsPath, String appName, String spreadsheetId, Map<String, List<String>> results) throws IOException, GeneralSecurityException {
+        final Sheets sheetsService = connect(credentialsPath, appName);
+        return file -> {
+            try {
+                exportFile(sheetsService, spreadsheetId, file, results);
+            } catch (IOException | RuntimeException e) {
+                results.get("failed").add(sheetName(file));
+                throw e;
+            }
+        };
+    }
 
+    /**
+     * @return the name of the sheet of a report: the name of its file without extensions, cut to the maximum sheet name length.
+     */
+    private static String sheetName(java.io.File child) {
+        String[] nameElements = child.getName().split("\\.");
+        return nameElements[0].substring(0, Math.min(nameElements[0].length(), 99));
+    }
 
-                if (child.isFile()) {
-                    //Sleep to avoid going over the allowed 60 calls per minute in free tier.
-                    Thread.sleep(1000);
-                    String[] nameElements = child.getName().split("\\.");
-                    //Get name of sheet from file name, without extensions. Then cut to max allowed sheet name length
-                    spreadsheetRange = nameElements[0].substring(0, Math.min(nameElements[0].length(), 99));
-
-                    //Try catch block gets or creates a sheet
-                    try {
-                        //Attempt to get sheet.
-
-                        ValueRange checkSheet = sheetsService.spreadsheets().values()
-                                .get(spreadsheetId, spreadsheetRange)
-                                .execute();
-                        if (checkSheet != null) {
-                            System.out.println("Sheet: " + spreadsheetRange + " exists");
-                            append[0] = true;
-                        }
-                    }
-                    catch (GoogleJsonResponseException e) {
-
-                        //Create sheet
-                        System.out.println("Sheet: " + spreadsheetRange + " didn't exist Spreadsheet so creating it.");
-                        append[0] = false;
-
-                        SheetProperties props = new SheetProperties();
-                        props.set("title", spreadsheetRange);
-                        AddSheetRequest addSheet = new AddSheetRequest();
-                        addSheet.setProperties(props);
-                        BatchUpdateSpreadsheetRequest update = new BatchUpdateSpreadsheetRequest();
-                        Request request = new Request();
-                        request.setAddSheet(addSheet);
-                        List<Request> requests = new ArrayList<>();
-                        requests.add(request);
-                        update.setRequests(requests);
-
-                        BatchUpdateSpreadsheetResponse batchUpdateSpreadsheetResponse = sheetsService.spreadsheets().batchUpdate(spreadsheetId, update).execute();
-                    }
+    /**
+     * Appends the rows of one report to the sheet named after the file, creating the sheet if needed.
+     * @param sheetsService Client returned by {@link GoogleSheetExport#connect}.
+     * @param spreadsheetId The Id of the Google Sheet document.
+     * @param child The report, in json format.
+     * @param results The name of the sheet is added to the updated, skipped or failed list.
+     * @throws IOException Issues connecting with Google Servers
+     * @throws InterruptedException Interrupted while slowing down the requests
+     */
+    public static void exportFile(Sheets sheetsService, String spreadsheetId, java.io.File child, Map<String, List<String>> results) throws IOException, InterruptedException {
+        // Spreadsheet range is the name of the sheet (corresponds to query) within the workbook (corresponds to config file) where the data is appended.
+        // For example, workbook at https://docs.google.com/spreadsheets/d/{spreadsheetID} is defined in file example_config.properties.
+        // The application will look in {dataFolder/example/} and read each *.json file there, for example, total_users_by_date.json.
+        // This will then create a sheet called total_users_by_date in the workbook above.
+        String spreadsheetRange;
+        Boolean[] append = {false};
+
+        //Sleep to avoid going over the allowed 60 calls per minute in free tier.
+        Thread.sleep(1000);
+        spreadsheetRange = sheetName(child);
 
-                    //Initialize values object
-                    List<List<Object>> valuesToAdd = new ArrayList<>();
+        //Try catch block gets or creates a sheet
+        try {
+            //Attempt to get sheet.
 
-                    //Get json file data.
-                    Stream<String> stream = Files.lines(Paths.get(child.getAbsolutePath()), StandardCharsets.UTF_8);
+            ValueRange checkSheet = sheetsService.spreadsheets().values()
+                    .get(spreadsheetId, spreadsheetRange)
+                    .execute();
+            if (checkSheet != null) {
+                System.out.println("Sheet: " + spreadsheetRange + " exists");
+                append[0] = true;
+            }
+        }
+        catch (GoogleJsonResponseException e) {
+
+            //Create sheet
+            System.out.println("Sheet: " + spreadsheetRange + " didn't exist Spreadsheet so creating it.");
+            append[0] = false;
+
+            SheetProperties props = new SheetProperties();
+            props.set("title", spreadsheetRange);
+            AddSheetRequest addSheet = new AddSheetRequest();
+            addSheet.setProperties(props);
+            BatchUpdateSpreadsheetRequest update = new BatchUpdateSpreadsheetRequest();
+            Request request = new Request();
+            request.setAddSheet(addSheet);
+            List<Request> requests = new ArrayList<>();
+            requests.add(request);
+            update.setRequests(requests);
+
+            BatchUpdateSpreadsheetResponse batchUpdateSpreadsheetResponse = sheetsService.spreadsheets().batchUpdate(spreadsheetId, update).execute();
+        }
 
-                    StringBuilder stringBuilder = new StringBuilder();
-                    stream.forEach(stringBuilder::append);
-                    String data = stringBuilder.toString();
+        //Initialize values object
+        List<List<Object>> valuesToAdd = new ArrayList<>();
 
-                    try {
-                        //Parse JSON
-                        JsonArray deserialize = (JsonArray) Jsoner.deserialize(data);
-                        //If file has no data, skip and add to skipped sheets
-                        if (deserialize.size() == 0) {
-                            skippedSheets.add(spreadsheetRange);
-                            continue;
+        //Read the json file data one record at a time.
+        try (ResultCursor cursor = ResultCursor.open(child)) {
+            //If file has no data, skip and add to skipped sheets
+            if (!cursor.hasNext()) {
+                results.get("skipped").add(spreadsheetRange);
+                return;
+            }
+            boolean header = false;
+
+            //Build data object. The cursor returns rows sharing one schema, so the header and the cells are read by position.
+            while (cursor.hasNext()) {
+                ResultRow record = (ResultRow) cursor.next();
+                ResultSchema schema = record.getSchema();
+                List<Object> row = new ArrayList<>(schema.size());
+
+                if (!header) {
+                    if (!append[0]) {
+                        List<Object> columns = new ArrayList<>(schema.size());
+                        for (int i = 0; i < schema.size(); i++) {
+                            if (record.hasValue(i)) columns.add(schema.getColumn(i));
                         }
-                        boolean[] header = {false};
-
-                        //Build data object
-                        deserialize.forEach(
-                                (item) -> {
-
-                                    List<Object> row = new ArrayList<>();
-                                    JsonObject record = (JsonObject) item;
-
-                                    if (!header[0]) {
-                                        if (!append[0]) {
-                                            valuesToAdd.add(Arrays.asList(record.keySet().toArray()));
-                                        }
-                                        header[0] = true;
-                                    }
-                                    record.forEach(
-                                            (key, value) -> {
-
-                                                String cellValue;
-
-                                                if (value == null) {
-                                                    cellValue = "";
-                                                } else {
-                                                    cellValue = Jsoup.parse(value.toString()).text();
-                                                }
-                                                row.add(cellValue);
-
-                                            });
-                                    valuesToAdd.add(row);
-
-
-                                }
-
-                        );
-
-                        //Create request body
-                        ValueRange body = new ValueRange()
-                                .setValues(valuesToAdd);
-
-                        //Append data to sheet
-                        AppendValuesResponse executionResult = sheetsService.spreadsheets().values().append(spreadsheetId, spreadsheetRange, body)
-                                .setValueInputOption("USER_ENTERED")
-                                .execute();
-                        System.out.println("Finished updating sheet: " + spreadsheetRange + ".");
-                        updatedSheets.add(spreadsheetRange);
-                    } catch (JsonException e) {
-                        failedSheets.add(spreadsheetRange);
-                        System.out.println("Error in sheet: " + spreadsheetRange + " =>" + e.getMessage());
+                        valuesToAdd.add(columns);
                     }
+                    header = true;
                 }
+                for (int i = 0; i < schema.size(); i++) {
+                    if (!record.hasValue(i)) continue;
+                    Object value = record.getValue(i);
+
+                    String cellValue;
+
+                    if (value == null) {
+                        cellValue = "";
+                    } else {
+                        cellValue = Jsoup.parse(value.toString()).text();
+                    }
+                    row.add(cellValue);
+                }
+                valuesToAdd.add(row);
             }
-        } else {
-            //handle if dir isn't really a dir
-            throw new IOException("Directory does not contain files.");
+
+            //Create request body
+            ValueRange body = new ValueRange()
+                    .setValues(valuesToAdd);
+
+            //Append data to sheet
+            AppendValuesResponse executionResult = sheetsService.spreadsheets().values().append(spreadsheetId, spreadsheetRange, body)
+                    .setValueInputOption("USER_ENTERED")
+                    .execute();
+            System.out.println("Finished updating sheet: " + spreadsheetRange + ".");
+            results.get("updated").add(spreadsheetRange);
+        } catch (JsonProcessingException | UncheckedIOException e) {
+            results.get("failed").add(spreadsheetRange);
+            System.out.println("Error in sheet: " + spreadsheetRange + " =>" + e.getMessage());
         }
-        return Map.of(
-                "updated", updatedSheets,
-                "skipped", skippedSheets,
-                "failed", failedSheets
-        );
     }
-}
\ No newline at end of file
+}
@@ -6,13 +6,24 @@
 package inquireetl;
 
 import inquireetl.inquirehandler.AbstractInquireHandler;
-import inquireetl.inquirehandler.AbstractPoller;
+import inquireetl.inquirehandler.ConcatenatedResult;
+import inquireetl.inquirehandler.LabeledResult;
+import inquireetl.inquirehandler.ResultConsumer;
+import inquireetl.inquirehandler.TokenCache;
+import inquireetl.inquirehandler.TransportSettings;
 import inquireetl.inquirehandler.v1.InquireHandlerV1;
 import inquireetl.inquirehandler.v2.InquireHandlerV2;
 import java.net.URL;
 import java.text.DateFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 
@@ -29,44 +40,188 @@ public class InquireData {
      * @param username - The username that is allowed to query shared queries in Inquire
      * @param password - The password for the user above
      * @param apiToken - The apiToken that is used if username and password is not being used.
-     * @param lds_name - The name of the Log Data Source in Inquire
+     * @param lds_name - The name of the Log Data Source in Inquire, or several names separated by commas. The queries then run on all of
+     *                 them in parallel, and the results of each query are merged with the LDS of every row in an added "lds" column.
      * @param timeout - Communications timeout, defaults to 30
      * @param esPageSize - The esPageSize value as per
      * https://developers.teneo.ai/documentation/latest/swagger/teneo-inquire/swagger/index.html#/tql/submitQuery
      * @param apiVersion - The Inquire API version to use.
+     * @param settings - How the queries are split, limited and polled, and the caches and stores they use.
+     * @param resultConsumers - Creates the consumer receiving the partial and final results of a query while it runs, by query name.
+     *                        Null to only collect the final results. Not used with several LDS.
+     * @param finishedQueries - Receives the results of every query as soon as it finished on all LDS, while the others keep running. Null if not needed.
      * @return resultMap - A map containing the queried Data
      */
-    public static HashMap<String, Iterable<Map<String, Object>>> get(String queryName, String dateFrom, String dateTo, String backend_URL, String username, String password, String apiToken, String lds_name, String timeout, String esPageSize, Integer apiVersion) {
+    public static HashMap<String, Iterable<Map<String, Object>>> get(String queryName, String dateFrom, String dateTo, String backend_URL, String username, String password, String apiToken, String lds_name, String timeout, String esPageSize, Integer apiVersion, QuerySettings settings, Function<String, ResultConsumer> resultConsumers, BiConsumer<String, Iterable<Map<String, Object>>> finishedQueries) {
+        final List<String> ldsNames = splitLdsNames(lds_name);
+        if (ldsNames.size() == 1) {
+            return getLds(queryName, dateFrom, dateTo, backend_URL, username, password, apiToken, lds_name, timeout, esPageSize, apiVersion, settings, resultConsumers, finishedQueries);
+        }
+
+        System.out.println("Running the queries on LDS " + ldsNames + " in parallel");
+        final ExecutorService executor = Executors.newFixedThreadPool(ldsNames.size());
+        final List<Future<HashMap<String, Iterable<Map<String, Object>>>>> ldsResults = new ArrayList<>();
+        for (String ldsName : ldsNames) {
+            ldsResults.add(executor.submit(() -> getLds(queryName, dateFrom, dateTo, backend_URL, username, password, apiToken, ldsName, timeout, esPageSize, apiVersion, settings, null, null)));
+        }
+        executor.shutdown();
+
+        // The results of each query on all LDS one after the other, in the order of the LDS names
+        final LinkedHashMap<String, List<Iterable<Map<String, Object>>>> partsByQuery = new LinkedHashMap<>();
+        boolean anySucceeded = false;
+        for (int i = 0; i < ldsNames.size(); i++) {
+            final HashMap<String, Iterable<Map<String, Object>>> resultsMap;
+            try {
+                resultsMap = ldsResults.get(i).get();
+            } catch (Exception e) {
+                System.out.println("ERROR: An error has occurred while processing LDS " + ldsNames.get(i) + ". Will continue processing the others, please run this one again.");
+                System.out.println(e.getMessage());
+                continue;
+            }
+            if (resultsMap == null) {
+                continue;
+            }
+            anySucceeded = true;
+            for (Map.Entry<String, Iterable<Map<String, Object>>> results : resultsMap.entrySet()) {
+                partsByQuery.computeIfAbsent(results.getKey(), name -> new ArrayList<>()).add(new LabeledResult(results.getValue(), "lds", ldsNames.get(i)));
+            }
+        }
+        if (!anySucceeded) {
+            return null;
+        }
+        final LinkedHashMap<String, Iterable<Map<String, Object>>> resultsMap = new LinkedHashMap<>();
+        partsByQuery.forEach((name, parts) -> resultsMap.put(name, new ConcatenatedResult(parts)));
+        if (finishedQueries != null) {
+            resultsMap.forEach(finishedQueries);
+        }
+        return resultsMap;
+    }
+
+    /**
+     * @param lds_name - One LDS name, or several separated by commas
+     * @return the names of the LDS, in the given order
+     */
+    public static List<String> splitLdsNames(String lds_name) {
+        final List<String> ldsNames = new ArrayList<>();
+        for (String ldsName : lds_name.split(",")) {
+            if (ldsName.trim().isEmpty()) {
+                throw new IllegalArgumentException("lds " + '"' + lds_name + '"' + " is not a valid list of LDS names");
+            }
+            if (!ldsNames.contains(ldsName.trim())) {
+                ldsNames.add(ldsName.trim());
+            }
+        }
+        return ldsNames;
+    }
+
+    /**
+     * Runs the queries on one LDS, see {@link InquireData#get}.
+     */
+    private static HashMap<String, Iterable<Map<String, Object>>> getLds(String queryName, String dateFrom, String dateTo, String backend_URL, String username, String password, String apiToken, String lds_name, String timeout, String esPageSize, Integer apiVersion, QuerySettings settings, Function<String, ResultConsumer> resultConsumers, BiConsumer<String, Iterable<Map<String, Object>>> finishedQueries) {
 
         try {
-            System.out.println("Starting processing data from " + backend_URL + " at " + new Date());
-            LinkedHashMap<String, Iterable<Map<String, Object>>> resultsMap = new LinkedHashMap<>();
+            System.out.println("Starting processing data from " + backend_URL + " LDS " + lds_name + " at " + new Date());
+            final TransportSettings transportSettings = settings.transportSettings;
+            final TokenCache tokenCache = settings.tokenCache;
+            final WatermarkStore watermarks = settings.watermarks;
+            final QueryHistory queryHistory = settings.queryHistory;
+            final Callable<Map<String, String>> fetchSharedQueries;
             AbstractInquireHandler inquireHandler = null;
             if (Integer.valueOf(1).equals(apiVersion)) {
-                inquireHandler = new InquireHandlerV1(new URL(backend_URL), apiToken);
-                if (apiToken == null) {
-                    inquireHandler.login(username, password);
-                }
-                List<inquireetl.inquirehandler.v1.models.SharedQuery> sharedQueries = ((InquireHandlerV1) inquireHandler).getSharedQueries(lds_name);
-                for (final inquireetl.inquirehandler.v1.models.SharedQuery publishedQuery : sharedQueries) {
-                    // Does not run queries that do not match the provided query name (unless "all").
-                    // It will also filter out the usage queries used by billing to monitor usage.
-                    generateResults(queryName, dateFrom, dateTo, lds_name, timeout, esPageSize, resultsMap, inquireHandler, publishedQuery.getPublishedName());
-                }
+                final InquireHandlerV1 inquireHandlerV1 = new InquireHandlerV1(new URL(backend_URL), apiToken, transportSettings);
+                inquireHandler = inquireHandlerV1;
+                fetchSharedQueries = () -> {
+                    final LinkedHashMap<String, String> sharedQueries = new LinkedHashMap<>();
+                    for (final inquireetl.inquirehandler.v1.models.SharedQuery publishedQuery : inquireHandlerV1.withReauthentication(() -> inquireHandlerV1.getSharedQueries(lds_name))) {
+                        sharedQueries.put(publishedQuery.getPublishedName(), publishedQuery.getQuery());
+                    }
+                    return sharedQueries;
+                };
             }
             else if (apiVersion == null || apiVersion.equals(2)) {
-                inquireHandler = new InquireHandlerV2(new URL(backend_URL), apiToken);
-                if (apiToken == null) {
-                    inquireHandler.login(username, password);
+                final InquireHandlerV2 inquireHandlerV2 = new InquireHandlerV2(new URL(backend_URL), apiToken, transportSettings);
+                inquireHandler = inquireHandlerV2;
+                fetchSharedQueries = () -> {
+                    final LinkedHashMap<String, String> sharedQueries = new LinkedHashMap<>();
+                    for (final inquireetl.inquirehandler.v2.models.SharedQuery publishedQuery : inquireHandlerV2.withReauthentication(() -> inquireHandlerV2.getSharedQueries(lds_name))) {
+                        sharedQueries.put(publishedQuery.getPublishedName(), publishedQuery.getQuery());
+                    }
+                    return sharedQueries;
+                };
+            }
+            else {
+                throw new IllegalArgumentException("Inquire API version " + apiVersion + " is not supported.");
+            }
+            if (apiToken == null) {
+                inquireHandler.authenticate(username, password, tokenCache);
+            }
+            // The hash of the TQL of each shared query by published name
+            final Map<String, String> tqlHashes = new LinkedHashMap<>();
+            if (settings.catalog != null) {
+                tqlHashes.putAll(settings.catalog.get(backend_URL, lds_name, fetchSharedQueries));
+            } else {
+                fetchSharedQueries.call().forEach((publishedName, tql) -> tqlHashes.put(publishedName, CacheStore.sha256(tql != null ? tql : "")));
+            }
+            List<String> queryNames = new ArrayList<>();
+            for (final String publishedName : tqlHashes.keySet()) {
+                // Does not run queries that do not match the provided query name (unless "all").
+                // It will also filter out the usage queries used by billing to monitor usage.
+                if (isSelected(queryName, publishedName)) {
+                    queryNames.add(publishedName);
                 }
-                List<inquireetl.inquirehandler.v2.models.SharedQuery> sharedQueries = ((InquireHandlerV2) inquireHandler).getSharedQueries(lds_name);
-                for (final inquireetl.inquirehandler.v2.models.SharedQuery publishedQuery : sharedQueries) {
-                    // Does not run queries that do not match the provided query name (unless "all").
-                    // It will also filter out the usage queries used by billing to monitor usage.
-                    generateResults(queryName, dateFrom, dateTo, lds_name, timeout, esPageSize, resultsMap, inquireHandler, publishedQuery.getPublishedName());
+            }
+            inquireHandler.setMaxPollInterval(settings.maxPollInterval);
+            final LinkedHashMap<String, Object> params = buildQueryParameters(dateFrom, dateTo, timeout, esPageSize);
+            final List<Map<String, Object>> windows = splitTimeWindows(params, settings.timeWindows);
+            // A range given on the command line replaces the watermarks for this run
+            final boolean incremental = watermarks != null && dateFrom == null;
+            final long extractedTo = System.currentTimeMillis();
+            final LinkedHashMap<String, List<Map<String, Object>>> windowsByQuery = new LinkedHashMap<>();
+            for (String name : queryNames) {
+                // The esPageSize given on the command line wins over the one tuned from the history of the query
+                final Integer tunedEsPageSize = queryHistory != null && !params.containsKey("esPageSize") ? queryHistory.getEsPageSize(backend_URL, lds_name, name) : null;
+                if (incremental) {
+                    final LinkedHashMap<String, Object> queryParams = new LinkedHashMap<>(params);
+                    final Long from = watermarks.getFrom(backend_URL, lds_name, name);
+                    if (from != null) {
+                        queryParams.put("from", Long.toString(from));
+                    }
+                    queryParams.put("to", Long.toString(extractedTo));
+                    if (tunedEsPageSize != null) {
+                        queryParams.put("esPageSize", tunedEsPageSize.toString());
+                    }
+                    windowsByQuery.put(name, Collections.singletonList(queryParams));
+                } else if (tunedEsPageSize != null) {
+                    final List<Map<String, Object>> queryWindows = new ArrayList<>();
+                    for (Map<String, Object> window : windows) {
+                        final LinkedHashMap<String, Object> queryParams = new LinkedHashMap<>(window);
+                        queryParams.put("esPageSize", tunedEsPageSize.toString());
+                        queryWindows.add(queryParams);
+                    }
+                    windowsByQuery.put(name, queryWindows);
+                } else {
+                    windowsByQuery.put(name, windows);
                 }
             }
-            if (apiToken == null) {
+            // All selected queries, and all windows of each, are submitted up front and polled together, up to maxConcurrentQueries at a time.
+            final QueryScheduler queryScheduler = new QueryScheduler(inquireHandler, lds_name, settings.maxConcurrentQueries);
+            queryScheduler.setResultCache(settings.resultCache, tqlHashes);
+            queryScheduler.setQueryHistory(queryHistory);
+            queryScheduler.setExecutionJournal(settings.executionJournals != null ? settings.executionJournals.apply(lds_name) : null);
+            queryScheduler.setMovingTo(incremental);
+            queryScheduler.setExecutionCoalescer(settings.executionCoalescer);
+            queryScheduler.setConcurrencyLimiter(settings.concurrencyLimiter);
+            queryScheduler.setFinishedQueries(finishedQueries);
+            LinkedHashMap<String, Iterable<Map<String, Object>>> resultsMap = queryScheduler.run(windowsByQuery, resultConsumers);
+            if (incremental) {
+                for (String name : resultsMap.keySet()) {
+                    // A query resumed from an interrupted run has results up to where that run started
+                    final String resumedTo = queryScheduler.getResumedTo(name);
+                    watermarks.stage(backend_URL, lds_name, name, resumedTo != null ? Long.parseLong(resumedTo) : extractedTo);
+                }
+            }
+            // Cached tokens must stay valid for the next configs and runs
+            if (apiToken == null && tokenCache == null) {
                 inquireHandler.logout();
             }
             return resultsMap;
@@ -78,31 +233,41 @@ public class InquireData {
         return null;
     }
 
-    private static void generateResults(String queryName, String dateFrom, String dateTo, String lds_name, String timeout, String esPageSize, LinkedHashMap<String, Iterable<Map<String, Object>>> resultsMap, AbstractInquireHandler inquireHandler, String publishedQueryName) {
-        if ((queryName.equalsIgnoreCase(publishedQueryName) || queryName.equalsIgnoreCase("all")) && !excludedQueryNamePattern.matcher(publishedQueryName).matches()) {
-            try {
-                Iterable<Map<String, Object>> results = runTqlQuery(inquireHandler, lds_name, dateFrom, dateTo, timeout, esPageSize, publishedQueryName);
-                resultsMap.put(publishedQueryName, results);
-            } catch (Exception ex) {
-                System.out.println("ERROR: An error has occurred while processing query " + queryName + ". Will continue processing the other queries, please run this one again.");
-                System.out.println(ex.getMessage());
-            }
+    private static boolean isSelected(String queryName, String publishedQueryName) {
+        return (queryName.equalsIgnoreCase(publishedQueryName) || queryName.equalsIgnoreCase("all")) && !excludedQueryNamePattern.matcher(publishedQueryName).matches();
+    }
+
+    /**
+     * @param params - Parameters of the whole range of the queries
+     * @param timeWindows - "day", "week" or a number of windows, null for no split
+     * @return the parameters of each window, in time order. Only the params themselves without a range or a split.
+     */
+    private static List<Map<String, Object>> splitTimeWindows(LinkedHashMap<String, Object> params, String timeWindows) {
+        if (timeWindows == null || !params.containsKey("from") || !params.containsKey("to")) {
+            return Collections.singletonList(params);
+        }
+        final List<Map<String, Object>> windows = new ArrayList<>();
+        for (long[] window : TimeWindows.split(Long.parseLong((String) params.get("from")), Long.parseLong((String) params.get("to")), timeWindows)) {
+            final LinkedHashMap<String, Object> windowParams = new LinkedHashMap<>(params);
+            windowParams.put("from", Long.toString(window[0]));
+            windowParams.put("to", Long.toString(window[1]));
+            windows.add(windowParams);
         }
+        System.out.println("Running each query in " + windows.size() + " time windows");
+        return windows;
     }
 
     /**
      *
-     * @param lds_name - Log Data Source Name
      * @param from - Time limit
      * @param to - Time limit
      * @param timeout - Seconds before giving up on connection
      * @param esPageSize - The esPageSize value as per
      * https://developers.teneo.ai/documentation/latest/swagger/teneo-inquire/swagger/index.html#/tql/submitQuery
-     * @param qryName - Name of the shared query
-     * @return map with query result values
-     * @throws Exception Something went wrong
+     * @return map with the parameters to submit the shared queries with
+     * @throws ParseException Dates not in one of the valid formats
      */
-    private static Iterable<Map<String, Object>> runTqlQuery(AbstractInquireHandler handler, String lds_name, String from, String to, String timeout, String esPageSize, String qryName) throws Exception {
+    private static LinkedHashMap<String, Object> buildQueryParameters(String from, String to, String timeout, String esPageSize) throws ParseException {
         LinkedHashMap<String, Object> params = new LinkedHashMap<>();
         // Setup dates if used
         DateFormat format = null;
@@ -123,14 +288,6 @@ public class InquireData {
         if (esPageSize != null && esPageSize.length() > 0) params.put("esPageSize", esPageSize);
 
         params.put("timeout", timeout);
-
-        System.out.println("Running query: " + qryName + "\nWith params: " + params);
-
-        AbstractPoller poller = handler.submitSharedQuery(lds_name, qryName, params);
-        while (!poller.poll()) {
-        }
-        final Iterable<Map<String, Object>> results = poller.getResults();
-        System.out.println("Query " + qryName + " finished\n");
-        return results;
+        return params;
     }
 }
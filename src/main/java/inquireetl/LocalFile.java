@@ -1,10 +1,17 @@
 package inquireetl;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import inquireetl.inquirehandler.ResultConsumer;
+import inquireetl.inquirehandler.ResultRow;
+import inquireetl.inquirehandler.ResultSchema;
+import inquireetl.inquirehandler.SpooledResult;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -13,6 +20,8 @@ public class LocalFile {
     
     private static final Pattern whitespaces = Pattern.compile("\\s+", Pattern.MULTILINE); 
 
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     /**
      *
      * @param separator The character that will be used to separate the data points.
@@ -23,12 +32,63 @@ public class LocalFile {
      * @param path The folder where the files will be created.
      *             The method recursively create directories within the output directory with the name of the configuration file.
      *             For example, a file called carwash_config.properties will result in /outputDir/carwash/queryname.extension
+     * @param jsonPassthrough Copy results still held in their spooled response to JSON files as received, instead of parsing and re-serializing them.
+     * @throws IOException The file could not be written; what was written of it is deleted
      */
 
-    static void output(String separator, Map.Entry<String, Iterable<Map<String, Object>>> results, String path) {
+    static void output(String separator, Map.Entry<String, Iterable<Map<String, Object>>> results, String path, boolean jsonPassthrough) throws IOException {
+        final ResultConsumer writer = openWriter(separator, results.getKey(), path, jsonPassthrough);
+        try {
+            writer.replace(results.getValue());
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+    }
 
-        //replace bad chars in filename
-        String fileName = sanitizeFilename(results.getKey());
+    /**
+     * Opens the output files of one query for all the given separators, so rows can be written while the query is still running.
+     * @param separators One entry per file to write, see {@link LocalFile#output(String, Map.Entry, String, boolean)}.
+     * @param queryName The name of the query, used for the file names.
+     * @param path The folder where the files will be created.
+     * @param jsonPassthrough See {@link LocalFile#output(String, Map.Entry, String, boolean)}.
+     * @return a consumer writing every row it receives to all the files.
+     */
+    static ResultConsumer openWriters(List<String> separators, String queryName, String path, boolean jsonPassthrough) throws IOException {
+        final List<ResultConsumer> writers = new ArrayList<>();
+        try {
+            for (String separator : separators) {
+                writers.add(openWriter(separator, queryName, path, jsonPassthrough));
+            }
+        } catch (IOException e) {
+            writers.forEach(ResultConsumer::abort);
+            throw e;
+        }
+        return new ResultConsumer() {
+            @Override
+            public void append(Iterable<Map<String, Object>> rows) throws IOException {
+                for (ResultConsumer writer : writers) writer.append(rows);
+            }
+
+            @Override
+            public void replace(Iterable<Map<String, Object>> rows) throws IOException {
+                for (ResultConsumer writer : writers) writer.replace(rows);
+            }
+
+            @Override
+            public void abort() {
+                writers.forEach(ResultConsumer::abort);
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (ResultConsumer writer : writers) writer.close();
+            }
+        };
+    }
+
+    private static ResultConsumer openWriter(String separator, String queryName, String path, boolean jsonPassthrough) throws IOException {
 
         // create the output folder if it does not exist.
         File directory = new File(String.valueOf(path));
@@ -37,6 +97,20 @@ public class LocalFile {
             System.out.println((mkdirsSuccess ? "Success making " : "Failed to make ") + " directory: " + directory.getPath());
         }
 
+        File outputFile = outputFile(separator, queryName, path);
+        System.out.println("Writing to " + outputFile.getPath() + " ...");
+
+        return new ResultWriter(separator, outputFile, jsonPassthrough);
+    }
+
+    /**
+     * @return the file the results of the query are written to with the separator, see {@link LocalFile#output(String, Map.Entry, String, boolean)}.
+     */
+    static File outputFile(String separator, String queryName, String path) {
+
+        //replace bad chars in filename
+        String fileName = sanitizeFilename(queryName);
+
         //This will assign the extension to the file according to the extension
         String outputFileName = fileName;
         if (separator.equalsIgnoreCase("json")) {
@@ -47,71 +121,173 @@ public class LocalFile {
         } else {
             outputFileName = path.concat(outputFileName).concat(".txt");
         }
+        return new File(outputFileName);
+    }
+
+    /**
+     * Writes rows to a JSON file if the separator is "json" and to a text file with the separator between the cells otherwise.
+     * Replacing the rows starts the file over.
+     */
+    private static class ResultWriter implements ResultConsumer {
 
-        System.out.println("Writing to " + outputFileName + " ...");
+        private final String separator;
+        private final File file;
+        private final boolean json;
+        private final boolean passthrough;
+        private FileOutputStream out;
+        private JsonGenerator generator;
+        private Writer writer;
+        private boolean headerWritten;
+        // Rows were copied into the JSON array as received, so the next generated row needs a separator of its own
+        private boolean rowsCopied;
 
-        if (separator.equalsIgnoreCase("json")) {
-            // Write out to JSON
-            writeResultsToJson(results.getValue(), outputFileName);
-        } else {
-            // Write out to text files
-            writeResultstoText(results.getValue(), outputFileName, separator);
+        ResultWriter(String separator, File file, boolean passthrough) throws IOException {
+            this.separator = separator;
+            this.file = file;
+            this.json = separator.equalsIgnoreCase("json");
+            this.passthrough = passthrough;
+            open();
         }
-    }
 
-    private static void writeResultsToJson(Iterable<Map<String, Object>> results, String fullFileName) {
+        private void open() throws IOException {
+            if (json) {
+                // Write out to JSON
+                out = new FileOutputStream(file);
+                generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+                generator.writeStartArray();
+                rowsCopied = false;
+            } else {
+                // Write out to text files
+                writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8));
+                headerWritten = false;
+            }
+        }
 
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            mapper.writeValue(new File(fullFileName), results);
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
+        @Override
+        public void append(Iterable<Map<String, Object>> rows) throws IOException {
+            final Iterator<Map<String, Object>> iterator = rows.iterator();
+            try {
+                while (iterator.hasNext()) {
+                    final Map<String, Object> map = iterator.next();
+                    if (json) {
+                        writeJsonRow(map);
+                    } else {
+                        writeTextRow(map);
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                // Results streamed from a spooled response hold the file open until they are read to the end
+                if (iterator instanceof Closeable) {
+                    ((Closeable) iterator).close();
+                }
+            }
         }
-    }
 
-    private static void writeResultstoText(Iterable<Map<String, Object>> results, String fullFileName, String separator) {
-        //try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fullFileName), StandardCharsets.UTF_8))) {
-        try (Writer writer = new BufferedWriter(new FileWriter(fullFileName, StandardCharsets.UTF_8))) {
+        private void writeJsonRow(Map<String, Object> map) throws IOException {
+            if (rowsCopied) {
+                generator.writeRaw(',');
+                rowsCopied = false;
+            }
+            if (!(map instanceof ResultRow)) {
+                generator.writeObject(map);
+                return;
+            }
+            // Write the values by position, without going through the map entries
+            final ResultRow resultRow = (ResultRow) map;
+            final ResultSchema schema = resultRow.getSchema();
+            generator.writeStartObject();
+            for (int i = 0; i < schema.size(); i++) {
+                if (resultRow.hasValue(i)) {
+                    generator.writeFieldName(schema.getColumn(i));
+                    generator.writeObject(resultRow.getValue(i));
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        private void writeTextRow(Map<String, Object> map) throws IOException {
             final String lineSeparator = System.getProperty("line.separator");
-            List<String> header = new ArrayList<>();
+            List<String> header = headerWritten ? null : new ArrayList<>();
             final List<String> row = new ArrayList<>();
-            for (final Map<String, Object> map : results) {
-                for (final Map.Entry<String, Object> entry : map.entrySet()) {
-                    if (header != null) header.add("\"" + entry.getKey().trim().replace("\"", "'") + '"');
-                    final String cell = whitespaces.matcher(entry.getValue().toString()).replaceAll(" ").trim();
-                    row.add(cell.isEmpty() ? "\"\"" : ("\"" + cell.replace("\"", "'") + '"'));
+            if (map instanceof ResultRow) {
+                // Read the values by position, the column names are only needed for the header
+                final ResultRow resultRow = (ResultRow) map;
+                final ResultSchema schema = resultRow.getSchema();
+                for (int i = 0; i < schema.size(); i++) {
+                    if (resultRow.hasValue(i)) {
+                        if (header != null) header.add(headerCell(schema.getColumn(i)));
+                        row.add(cell(resultRow.getValue(i)));
+                    }
                 }
-                if (header != null) {
-                    writer.write(String.join(separator, header));
-                    header = null;
-                    writer.write(lineSeparator);
+            } else {
+                for (final Map.Entry<String, Object> entry : map.entrySet()) {
+                    if (header != null) header.add(headerCell(entry.getKey()));
+                    row.add(cell(entry.getValue()));
                 }
-                writer.write(String.join(separator, row));
-                row.clear();
+            }
+            if (header != null) {
+                writer.write(String.join(separator, header));
+                headerWritten = true;
                 writer.write(lineSeparator);
             }
-            /*
-            boolean headerDisplayed = false;
-            for (Map<String, Object> map : results) {
-                List<String> header = new ArrayList<>();
-                List<String> row = new ArrayList<>();
-                map.entrySet().stream().forEach((entry) -> {
-                    header.add("\"" + entry.getKey() + "\"");
-                    final String cell = whitespaces.matcher(entry.getValue().toString()).replaceAll(" ").trim();
-                    //row.add("\"" + entry.getValue().toString().replace("\"", "'") + "\"");
-                    //TODO
-                    row.add(cell.isEmpty() ? "\"\"" : ("\"" + cell.replace("\"", "'") + '"'));
-                });
-                if (!headerDisplayed) {
-                    writer.write(String.join(separator, header) + lineSeparator);
-                    headerDisplayed = true;
-                }
-                writer.write(String.join(separator, row) + lineSeparator);
+            writer.write(String.join(separator, row));
+            writer.write(lineSeparator);
+        }
+
+        private String headerCell(String column) {
+            return "\"" + column.trim().replace("\"", "'") + '"';
+        }
+
+        private String cell(Object value) {
+            final String cell = value == null ? "" : whitespaces.matcher(value.toString()).replaceAll(" ").trim();
+            return cell.isEmpty() ? "\"\"" : ("\"" + cell.replace("\"", "'") + '"');
+        }
+
+        @Override
+        public void replace(Iterable<Map<String, Object>> rows) throws IOException {
+            closeStreams();
+            open();
+            if (json && passthrough && rows instanceof SpooledResult) {
+                // Copy the rows from the spooled response without parsing them
+                generator.flush();
+                rowsCopied = ((SpooledResult) rows).transferRowsTo(out.getChannel());
+            } else {
+                append(rows);
+            }
+        }
+
+        @Override
+        public void abort() {
+            try {
+                closeStreams();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            file.delete();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (json) {
+                generator.writeEndArray();
+            }
+            closeStreams();
+            System.out.println("Writing to " + file.getPath() + " complete.");
+        }
+
+        private void closeStreams() throws IOException {
+            if (generator != null) {
+                // Also closes the file stream
+                generator.close();
+                generator = null;
+                out = null;
+            }
+            if (writer != null) {
+                writer.close();
+                writer = null;
             }
-            */
-            System.out.println("Writing to " + fullFileName + " complete.");
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
         }
     }
 
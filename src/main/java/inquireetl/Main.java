@@ -1,10 +1,19 @@
 package inquireetl;
 
+import inquireetl.inquirehandler.InquireRest;
+import inquireetl.inquirehandler.PollScheduler;
+import inquireetl.inquirehandler.ResultConsumer;
+import inquireetl.inquirehandler.TokenCache;
+import inquireetl.inquirehandler.TransferStats;
+import inquireetl.inquirehandler.TransportSettings;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * This is the main class of this project. It allows users to create generate
@@ -24,14 +33,19 @@ public class Main {
      *             --from : Optional. Date for the query search to start from. Valid format is yyyy-MM-ddTHH:mm:ssZ or yyyy-MM-dd e.g. 2017-08-31T23:55:01Z. Must be have a to_date if used.\n"
      *             --to : Optional. Date for the query search to end. Valid format is yyyy-MM-ddTHH:mm:ssZ or yyyy-MM-dd e.g. 2017-08-31T23:55:01Z. Must have a from_date if used.\n"
      *             --api_version : Optional. Version of the Inquire API to use. Valid format is an integer. i.e. 1 for V1, 2 for V2 etc."
+     *             --time_windows : Optional. Split the --from/--to range into windows run as separate executions: day, week or a number of windows.
+     *             --refresh_catalog : Optional. List the shared queries on Inquire even if the cached list has not expired.
+     *             --workers : Optional. Number of configs processed at the same time. Defaults to 1.
+     *             --workers_per_backend : Optional. Number of configs processed at the same time on one Inquire backend. Defaults to --workers.
+     *             --workers_per_sink : Optional. Number of configs exporting to one Google Sheet or Azure SQL database at the same time. Defaults to --workers.
+     *             --daemon : Optional. Keep running and process each config on the schedule in its properties file.
      */
     public static void main(String[] args) throws Exception {
 
         try {
-            System.setProperty("org.owasp.esapi.logSpecial.discard", "true");
             HashMap<String, String> argsMap = new HashMap<>();
             //Define which parameters are acceptable
-            List<String> legalParams = Arrays.asList("config", "google_sheets", "azure_sql", "export_only", "query", "from", "to", "help", "esPageSize", "api_version");
+            List<String> legalParams = Arrays.asList("config", "google_sheets", "azure_sql", "export_only", "query", "from", "to", "help", "esPageSize", "api_version", "refresh_catalog", "time_windows", "workers", "workers_per_backend", "workers_per_sink", "daemon");
             for (String arg : args) {
                 //Parse the parameters from the command line
                 String[] splitArg = arg.split("-{2}|=");
@@ -67,9 +81,18 @@ public class Main {
             String dateFrom = argsMap.getOrDefault("from", null);
             String dateTo = argsMap.getOrDefault("to", null);
             String esPageSize = argsMap.getOrDefault("esPageSize", null);
+            String timeWindows = argsMap.getOrDefault("time_windows", null);
+            if (timeWindows != null) {
+                if (dateFrom == null) {
+                    throw new IllegalArgumentException("--time_windows requires --from and --to.");
+                }
+                TimeWindows.validate(timeWindows);
+            }
             boolean exportToSheets = argsMap.containsKey("google_sheets");
             boolean exportToSql = argsMap.containsKey("azure_sql");
             boolean exportOnly = argsMap.containsKey("export_only");
+            boolean refreshCatalog = argsMap.containsKey("refresh_catalog");
+            boolean daemon = argsMap.containsKey("daemon");
             Integer apiVersion = null;
             if (argsMap.containsKey("api_version")) {
                 try {
@@ -78,6 +101,39 @@ public class Main {
                     throw new IllegalArgumentException("--api_version " + '"' + argsMap.get("api_version") + '"' + " is not a valid number");
                 }
             }
+            int workers = 1;
+            if (argsMap.containsKey("workers")) {
+                try {
+                    workers = Integer.parseInt(argsMap.get("workers"));
+                } catch (NumberFormatException exception) {
+                    throw new IllegalArgumentException("--workers " + '"' + argsMap.get("workers") + '"' + " is not a valid number");
+                }
+                if (workers < 1) {
+                    throw new IllegalArgumentException("--workers must be at least 1.");
+                }
+            }
+            int workersPerBackend = workers;
+            if (argsMap.containsKey("workers_per_backend")) {
+                try {
+                    workersPerBackend = Integer.parseInt(argsMap.get("workers_per_backend"));
+                } catch (NumberFormatException exception) {
+                    throw new IllegalArgumentException("--workers_per_backend " + '"' + argsMap.get("workers_per_backend") + '"' + " is not a valid number");
+                }
+                if (workersPerBackend < 1) {
+                    throw new IllegalArgumentException("--workers_per_backend must be at least 1.");
+                }
+            }
+            int workersPerSink = workers;
+            if (argsMap.containsKey("workers_per_sink")) {
+                try {
+                    workersPerSink = Integer.parseInt(argsMap.get("workers_per_sink"));
+                } catch (NumberFormatException exception) {
+                    throw new IllegalArgumentException("--workers_per_sink " + '"' + argsMap.get("workers_per_sink") + '"' + " is not a valid number");
+                }
+                if (workersPerSink < 1) {
+                    throw new IllegalArgumentException("--workers_per_sink must be at least 1.");
+                }
+            }
             // This block checks whether an export option was given with --export_only
             if (exportOnly && !exportToSheets && !exportToSql) {
                 throw new IllegalArgumentException("--export_only command received but neither --azure_sql nor --google_sheets were specified");
@@ -100,270 +156,516 @@ public class Main {
                 throw new IOException("No properties files found in supplied directory.");
             }
 
-            //Iterate over each of the config files to query Inquire, produce reports and export as per options
+            if (!isConfigPathDir && !configFiles[0].isFile()) {
+                throw new IOException("Path provided does not contain a valid properties file");
+            }
+            List<File> configFileList = new ArrayList<>();
             for (File configFile : configFiles) {
-
-
                 if (configFile.isFile()) {
+                    configFileList.add(configFile);
+                }
+            }
 
-                    // Extract file name and canonical path
-                    String fileName = configFile.getName();
-                    String filePath = configFilesPath + (isConfigPathDir ? fileName : "");
-                    System.out.println("Currently processing " + filePath);
-
-                    // Access to properties file containing Inquire backend, user and password
-                    InputStream input = new FileInputStream(filePath);
-
-
-                    // Read properties file and close it
-                    Properties prop = new Properties();
-                    prop.load(input);
-                    input.close();
-
-
-                    // Check all required properties are found
-                    // Mandatory
-                    String backend_URL = prop.getProperty("inquireBackend");
-                    String lds_name = prop.getProperty("lds");
-                    String username = prop.getProperty("inquireUser");
-                    String password = prop.getProperty("inquirePassword");
-                    String apiToken = prop.getProperty("apiToken");
-                    //Optional
-                    String separator = prop.getProperty("separator");
-                    String timeout = prop.getProperty("timeout");
-                    if (prop.containsKey("apiVersion") && apiVersion == null) {
-                        try {
-                            apiVersion = Integer.valueOf(prop.getProperty("apiVersion"));
-                        } catch (NumberFormatException exception) {
-                            throw new IllegalArgumentException("apiVersion " + '"' + prop.getProperty("apiVersion") + '"' + " is not a valid number");
-                        }
+            final Integer argApiVersion = apiVersion;
+            final int configWorkers = workers;
+            final int configWorkersPerBackend = workersPerBackend;
+            final int configWorkersPerSink = workersPerSink;
+            if (daemon) {
+                //Each config runs on the schedule in its properties file, until the process is stopped
+                Map<File, CronSchedule> schedules = new LinkedHashMap<>();
+                for (File configFile : configFileList) {
+                    String schedule = loadProperties(configFile).getProperty("schedule");
+                    if (schedule != null) {
+                        schedules.put(configFile, CronSchedule.parse(schedule));
+                    } else {
+                        System.out.println("WARNING: " + configFile.getPath() + " has no schedule, it is not run by --daemon.");
                     }
+                }
+                if (schedules.isEmpty()) {
+                    throw new IllegalArgumentException("--daemon requires a schedule in at least one config file.");
+                }
+                new Daemon(schedules, batch -> runConfigs(batch, queryName, dateFrom, dateTo, esPageSize, timeWindows, argApiVersion, exportToSheets, exportToSql, exportOnly, refreshCatalog, true,
+                        configWorkers, configWorkersPerBackend, configWorkersPerSink)).run();
+            } else {
+                runConfigs(configFileList, queryName, dateFrom, dateTo, esPageSize, timeWindows, argApiVersion, exportToSheets, exportToSql, exportOnly, refreshCatalog, false,
+                        configWorkers, configWorkersPerBackend, configWorkersPerSink);
+            }
+        } catch (Exception e) {
+            //Catch all exception
+            printHelp();
+            System.out.println("Error: " + e.getClass() + " ----- " + e.getMessage());
+            e.printStackTrace(System.out);
+        } finally {
+            //The async request threads of the clients would keep the process alive
+            InquireRest.closeClients();
+        }
+    }
 
-                    if (apiVersion != null && (apiVersion > 2 || apiVersion < 1)) {
-                        throw new IllegalArgumentException("Only versions 1 and 2 of the API are currently supported.");
+    /**
+     * Processes the config files, on as many workers as given, and reports the ones that failed.
+     * @param configFiles The config files to process.
+     * @param daemon Whether the configs run on their schedules in --daemon mode.
+     */
+    private static void runConfigs(List<File> configFiles, String queryName, String dateFrom, String dateTo, String esPageSize, String timeWindows, Integer argApiVersion, boolean exportToSheets, boolean exportToSql,
+                                   boolean exportOnly, boolean refreshCatalog, boolean daemon, int workers, int workersPerBackend, int workersPerSink) throws Exception {
+        //Count the configs of each backend and LDS, so an execution shared by several configs runs on Inquire once and its results are kept until the last of them
+        ExecutionCoalescer executionCoalescer = new ExecutionCoalescer();
+        //Queue each of the config files to query Inquire, produce reports and export as per options
+        ConfigWorkers configWorkers = new ConfigWorkers(workers, workersPerBackend, workersPerSink);
+        for (File configFile : configFiles) {
+            // Extract file name and path
+            String fileName = configFile.getName();
+            String filePath = configFile.getPath();
+
+            // Read properties file containing Inquire backend, user and password
+            Properties prop = loadProperties(configFile);
+
+            String backendUrl = prop.getProperty("inquireBackend");
+            List<String> ldsNames = !exportOnly && prop.getProperty("lds") != null ? InquireData.splitLdsNames(prop.getProperty("lds")) : Collections.emptyList();
+            for (String ldsName : ldsNames) {
+                executionCoalescer.plan(backendUrl, ldsName);
+            }
+            configWorkers.add(filePath, backendUrl, () -> {
+                try {
+                    processConfig(fileName, filePath, prop, queryName, dateFrom, dateTo, esPageSize, timeWindows, argApiVersion,
+                            exportToSheets, exportToSql, exportOnly, refreshCatalog, daemon, executionCoalescer, configWorkers);
+                } finally {
+                    //Results kept for this config's LDS are deleted once no later config needs them, whether it succeeded or not
+                    for (String ldsName : ldsNames) {
+                        executionCoalescer.done(backendUrl, ldsName);
                     }
+                }
+            });
+        }
 
-                    //Will create output folder path from config or default to system Temp folder
-                    String outputFolderPath = (String) prop.getOrDefault("outputDir", System.getProperty("java.io.tmpdir") + "/inquire_exporter/");
-                    outputFolderPath += (outputFolderPath.charAt(outputFolderPath.length() - 1) == '/' ? "" : "/") + (fileName.split("_config")[0] + "/");
-
-                    System.out.println("Output file path: " + outputFolderPath);
-                    if (!exportOnly) emptyFolder(new File(outputFolderPath));
-
-                    //Mandatory for --google_sheets
-                    String googleCredentialsPath = prop.getProperty("googleCredentialsPath");
-                    String googleCloudAppName = prop.getProperty("googleCloudAppName");
-                    String googleSheetId = prop.getProperty("googleSheetId");
-                    //Mandatory for Azure
-                    String azureServerName = prop.getProperty("azureServerName");
-                    String azureDatabaseName = prop.getProperty("azureDatabaseName");
-                    String azureUser = prop.getProperty("azureUser");
-                    String azurePassword = prop.getProperty("azurePassword");
-
-
-                    //Check for required
-                    boolean mandatoryMissing = false;
-                    String missingProperties = "";
-                    //General properties
-                    if (backend_URL == null) {
-                        missingProperties += "\t- backend: mandatory. The URL to the Teneo Inquire backend\n";
-                    }
-                    if (lds_name == null) {
-                        missingProperties += "\t- lds: mandatory. The name of the LDS.\n";
-                    }
-                    if (username == null && password == null && apiToken == null) {
-                        missingProperties += "\t- username: mandatory if no API token is provided. User name to access the LDS\n";
-                        missingProperties += "\t- password: mandatory if logging in with a user name. User password to access the LDS\n";
-                        missingProperties += "\t- apiToken: mandatory if a user name and password is not provided. Api token to access the LDS\n";
-                    }
-                    if (username != null && password == null && apiToken == null) {
-                        missingProperties += "\t- password: mandatory if logging in with a user name. User password to access the LDS\n";
-                    }
-                    if (username == null && password != null && apiToken == null) {
-                        missingProperties += "\t- username: mandatory if no API token is provided. User name to access the LDS\n";
-                    }
+        //A failing config is reported and does not stop the others
+        List<String> failedConfigs = configWorkers.run();
+        if (!failedConfigs.isEmpty()) {
+            System.out.println("ERROR: " + failedConfigs.size() + " of " + configFiles.size() + " configs failed: " + failedConfigs);
+        }
+    }
 
-                    if (username != null && password != null && apiToken != null) {
-                        throw new RuntimeException("Configuration File contains login information and an API token. Only one authentication method should be provided.");
-                    }
+    /**
+     * @return the value of a numeric property of a config, or the default if the config does not have it.
+     * @throws IllegalArgumentException The value is not a number, or it is below the minimum.
+     */
+    private static long parseLong(Properties prop, String key, long defaultValue, long min) {
+        if (!prop.containsKey(key)) {
+            return defaultValue;
+        }
+        final long value;
+        try {
+            value = Long.parseLong(prop.getProperty(key).trim());
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException(key + " " + '"' + prop.getProperty(key) + '"' + " is not a valid number");
+        }
+        if (value < min) {
+            throw new IllegalArgumentException(min == 0 ? key + " cannot be negative." : key + " must be at least " + min + ".");
+        }
+        return value;
+    }
 
-                    //Specific properties
-                    //Google Sheets
-                    if (googleCredentialsPath == null && exportToSheets) {
-                        missingProperties += "\t- googleCredentialsPath: mandatory. The path to the Google API credentials file.\n";
-                    }
-                    if (googleCloudAppName == null && exportToSheets) {
-                        missingProperties += "\t- googleCloudAppName: mandatory. The name of the Google App to which the service account is linked, e.g. Inquire Exporter.\n";
-                    }
-                    if (googleSheetId == null && exportToSheets) {
-                        missingProperties += "\t- googleSheetId: mandatory. The Id of the Google Sheet document. It is a long hash that can be found in the browser's url bar.\n";
-                    }
-                    //Azure SQL
-                    if (azureServerName == null && exportToSql) {
-                        missingProperties += "\t- azureServerName: mandatory. The name of the server as it appears in the Azure AQL Database overview.\n";
-                    }
-                    if (azureDatabaseName == null && exportToSql) {
-                        missingProperties += "\t- azureDatabaseName: mandatory. The name of the database as it appears in the Azure AQL Database overview.\n";
-                    }
-                    if (azureUser == null && exportToSql) {
-                        missingProperties += "\t- azureUser: mandatory. Database username with permissions to create tables and add data.\n";
-                    }
-                    if (azurePassword == null && exportToSql) {
-                        missingProperties += "\t- azurePassword: mandatory. Password for the Azure user.\n";
-                    }
+    /**
+     * @see Main#parseLong(Properties, String, long, long)
+     */
+    private static int parseInt(Properties prop, String key, int defaultValue, int min) {
+        final long value = parseLong(prop, key, defaultValue, min);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(key + " " + '"' + prop.getProperty(key) + '"' + " is not a valid number");
+        }
+        return (int) value;
+    }
 
+    private static Properties loadProperties(File configFile) throws IOException {
+        try (InputStream input = new FileInputStream(configFile)) {
+            Properties prop = new Properties();
+            prop.load(input);
+            return prop;
+        }
+    }
 
-                    //Check if any mandatory ones have been missed
-                    if (!missingProperties.equals("")) {
-                        mandatoryMissing = true;
-                    }
+    /**
+     * Queries Inquire for the shared queries of one config, writes their reports to the output folder of the config
+     * and exports them as per options, then prints the execution report of the config.
+     * @param fileName Name of the config file, which names its output folder.
+     * @param filePath Path of the config file.
+     * @param prop The properties of the config file.
+     * @param argApiVersion The --api_version parameter, null if not given.
+     * @param daemon Whether the config runs on its schedule in --daemon mode.
+     */
+    private static void processConfig(String fileName, String filePath, Properties prop, String queryName, String dateFrom, String dateTo, String esPageSize, String timeWindows, Integer argApiVersion,
+                                      boolean exportToSheets, boolean exportToSql, boolean exportOnly, boolean refreshCatalog, boolean daemon, ExecutionCoalescer executionCoalescer, ConfigWorkers configWorkers) throws Exception {
+        System.out.println("Currently processing " + filePath);
+
+        // Check all required properties are found
+        // Mandatory
+        String backend_URL = prop.getProperty("inquireBackend");
+        String lds_name = prop.getProperty("lds");
+        String username = prop.getProperty("inquireUser");
+        String password = prop.getProperty("inquirePassword");
+        String apiToken = prop.getProperty("apiToken");
+        //Optional
+        String separator = prop.getProperty("separator");
+        String timeout = prop.getProperty("timeout");
+        boolean streamResults = Boolean.parseBoolean(prop.getProperty("streamResults", "false"));
+        boolean jsonPassthrough = Boolean.parseBoolean(prop.getProperty("jsonPassthrough", "false"));
+        int maxConcurrentQueries = parseInt(prop, "maxConcurrentQueries", 1, 1);
+        boolean adaptiveConcurrency = Boolean.parseBoolean(prop.getProperty("adaptiveConcurrency", "false"));
+        long adaptiveLatencyThreshold = parseLong(prop, "adaptiveLatencyThreshold", 10000, 0);
+        long maxPollInterval = parseLong(prop, "maxPollInterval", PollScheduler.DEFAULT_MAX_DELAY, 0);
+        TransportSettings transportSettings = TransportSettings.fromProperties(prop);
+        TokenCache tokenCache = null;
+        if (Boolean.parseBoolean(prop.getProperty("tokenCache", "false")) || prop.containsKey("tokenCacheFile")) {
+            long tokenCacheTtl = parseLong(prop, "tokenCacheTtl", 1800, 1);
+            tokenCache = new TokenCache(prop.containsKey("tokenCacheFile") ? new File(prop.getProperty("tokenCacheFile")) : null, tokenCacheTtl * 1000);
+        } else if (daemon) {
+            //The daemon keeps the access tokens in memory for the next runs instead of logging in and out for each
+            tokenCache = new TokenCache(null, 1800 * 1000);
+        }
+        CacheStore cacheStore = prop.containsKey("cacheDir") ? new CacheStore(new File(prop.getProperty("cacheDir"))) : null;
+        SharedQueryCatalog catalog = null;
+        if (cacheStore != null) {
+            long catalogTtl = parseLong(prop, "catalogTtl", 0, 0);
+            catalog = new SharedQueryCatalog(cacheStore, catalogTtl * 1000, refreshCatalog);
+        }
+        ResultCache resultCache = null;
+        if (Boolean.parseBoolean(prop.getProperty("resultCache", "false"))) {
+            if (cacheStore == null) {
+                throw new IllegalArgumentException("resultCache requires cacheDir to keep the results in.");
+            }
+            long resultCacheTtl = parseLong(prop, "resultCacheTtl", 86400, 1);
+            long resultCacheMaxSize = parseLong(prop, "resultCacheMaxSize", 1024, 1);
+            resultCache = new ResultCache(cacheStore, resultCacheMaxSize * 1024 * 1024, resultCacheTtl * 1000);
+        }
+        EsPageSizeTuner esPageSizeTuner = null;
+        if (Boolean.parseBoolean(prop.getProperty("esPageSizeTuning", "false"))) {
+            if (cacheStore == null) {
+                throw new IllegalArgumentException("esPageSizeTuning requires cacheDir to keep the history of the queries in.");
+            }
+            int esPageSizeMin = parseInt(prop, "esPageSizeMin", 100, 1);
+            int esPageSizeMax = parseInt(prop, "esPageSizeMax", 10000, esPageSizeMin);
+            esPageSizeTuner = new EsPageSizeTuner(esPageSizeMin, esPageSizeMax);
+        }
+        QueryHistory queryHistory = cacheStore != null ? new QueryHistory(cacheStore, esPageSizeTuner) : null;
+        boolean resumeQueries = Boolean.parseBoolean(prop.getProperty("resumeQueries", "false"));
+        if (resumeQueries && cacheStore == null) {
+            throw new IllegalArgumentException("resumeQueries requires cacheDir to keep the execution journal in.");
+        }
+        WatermarkStore watermarks = null;
+        if (Boolean.parseBoolean(prop.getProperty("incremental", "false"))) {
+            if (cacheStore == null) {
+                throw new IllegalArgumentException("incremental requires cacheDir to keep the watermarks in.");
+            }
+            long incrementalOverlap = parseLong(prop, "incrementalOverlap", 0, 0);
+            watermarks = new WatermarkStore(cacheStore, incrementalOverlap * 1000);
+        }
+        //The --api_version parameter takes preference over the apiVersion of each config
+        Integer apiVersion = argApiVersion;
+        if (prop.containsKey("apiVersion") && apiVersion == null) {
+            try {
+                apiVersion = Integer.valueOf(prop.getProperty("apiVersion"));
+            } catch (NumberFormatException exception) {
+                throw new IllegalArgumentException("apiVersion " + '"' + prop.getProperty("apiVersion") + '"' + " is not a valid number");
+            }
+        }
 
-                    //Check optionals
-                    if (separator == null) {
-                        missingProperties += "\t- separator: optional. Separator used between fields in the output files. Defaults to 'json'.\n";
-                    }
-                    if (timeout == null) {
-                        missingProperties += "\t- timeout: optional. Timeout for queries. Defaults to 30 seconds.\n";
-                    }
+        if (apiVersion != null && (apiVersion > 2 || apiVersion < 1)) {
+            throw new IllegalArgumentException("Only versions 1 and 2 of the API are currently supported.");
+        }
 
-                    if (!missingProperties.equals("")) {
-                        String errorString = (mandatoryMissing ? "ERROR:" : "WARNING:") + " Missing configuration properties. \n"
-                                + "The following could not be found or had identifiable problems: \n"
-                                + missingProperties;
-                        System.out.println(errorString);
-                        if (mandatoryMissing) {
-                            throw new RuntimeException("Configuration File missing mandatory fields.");
-                        }
-                    }
+        //Will create output folder path from config or default to system Temp folder
+        String outputFolderPath = (String) prop.getOrDefault("outputDir", System.getProperty("java.io.tmpdir") + "/inquire_exporter/");
+        outputFolderPath += (outputFolderPath.charAt(outputFolderPath.length() - 1) == '/' ? "" : "/") + (fileName.split("_config")[0] + "/");
+
+        System.out.println("Output file path: " + outputFolderPath);
+        if (!exportOnly) emptyFolder(new File(outputFolderPath));
+
+        //Mandatory for --google_sheets
+        String googleCredentialsPath = prop.getProperty("googleCredentialsPath");
+        String googleCloudAppName = prop.getProperty("googleCloudAppName");
+        String googleSheetId = prop.getProperty("googleSheetId");
+        //Mandatory for Azure
+        String azureServerName = prop.getProperty("azureServerName");
+        String azureDatabaseName = prop.getProperty("azureDatabaseName");
+        String azureUser = prop.getProperty("azureUser");
+        String azurePassword = prop.getProperty("azurePassword");
+        long azureExportDelay = parseLong(prop, "azureExportDelay", 0, 0);
+        //The Google Sheet and the Azure SQL database exported to, limited by --workers_per_sink
+        String sheetsSink = "Google Sheet " + googleSheetId;
+        String sqlSink = "Azure SQL " + azureServerName + "/" + azureDatabaseName;
+
+
+        //Check for required
+        boolean mandatoryMissing = false;
+        String missingProperties = "";
+        //General properties
+        if (backend_URL == null) {
+            missingProperties += "\t- backend: mandatory. The URL to the Teneo Inquire backend\n";
+        }
+        if (lds_name == null) {
+            missingProperties += "\t- lds: mandatory. The name of the LDS.\n";
+        }
+        if (username == null && password == null && apiToken == null) {
+            missingProperties += "\t- username: mandatory if no API token is provided. User name to access the LDS\n";
+            missingProperties += "\t- password: mandatory if logging in with a user name. User password to access the LDS\n";
+            missingProperties += "\t- apiToken: mandatory if a user name and password is not provided. Api token to access the LDS\n";
+        }
+        if (username != null && password == null && apiToken == null) {
+            missingProperties += "\t- password: mandatory if logging in with a user name. User password to access the LDS\n";
+        }
+        if (username == null && password != null && apiToken == null) {
+            missingProperties += "\t- username: mandatory if no API token is provided. User name to access the LDS\n";
+        }
 
+        if (username != null && password != null && apiToken != null) {
+            throw new RuntimeException("Configuration File contains login information and an API token. Only one authentication method should be provided.");
+        }
 
-                    //Apply defaults for export type
-                    separator = separator != null ? separator : "json";
-                    timeout = timeout != null ? timeout : "30";
-                    //This delays the writing of each query to avoid overwhelming the system
-                    Thread.sleep(1000);
-
-                    //These values are to initialize reporting variables
-                    int numberOfInquireQueries = 0;
-                    int numberOfFilesWritten = 0;
-                    HashSet<String> formatCount = new HashSet<>();
-                    Map<String, List<String>> googleSheetsResults = null;
-                    Map<String, List<String>> azureTablesResults = null;
-                    StringBuilder finalReport = new StringBuilder(2048)
-                            .append("\n\n\t**************Execution Report**************\n\nFile Name: \t\t\t\t\t")
-                            .append(fileName)
-                            .append("\n");
-
-
-                    // This block will only execute if new reports are needed, otherwise it will use the current reports in the output directory
-                    if (!exportOnly) {
-                        //This is the entry point for the Inquire Data class, returns a serialized Map with the data of all shared queries (or requested one) in the LDS.
-                        HashMap<String, Iterable<Map<String, Object>>> reportMap;
-                        reportMap = InquireData.get(queryName, dateFrom, dateTo, backend_URL, username, password, apiToken, lds_name, timeout, esPageSize, apiVersion);
-                        if (reportMap != null) {
-                            //Update number of run queries for report
-                            numberOfInquireQueries = reportMap.size();
-
-                            //Iterate over the result of each query to create a report file
-                            for (Map.Entry<String, Iterable<Map<String, Object>>> report : reportMap.entrySet()) {
-                                //Create json file if requested separator is not json and Google Sheet export is requested
-                                if (exportToSheets && !separator.equals("json")) {
-                                    formatCount.add("json");
-                                    numberOfFilesWritten++;
-                                    LocalFile.output("json", report, outputFolderPath);
-                                }
-                                //Create CSV file if requested separator is not "," and Azure SQL export is requested.
-                                //TODO => Allow for string csv to be used in config in place of ","
-                                if (exportToSql && !separator.equals(",")) {
-                                    formatCount.add("csv");
-                                    numberOfFilesWritten++;
-                                    LocalFile.output(",", report, outputFolderPath);
-                                }
-                                //Create report file with separator if it wasn't created for the export options above.
-                                formatCount.add(separator.equals(",") ? "csv" : separator);
-                                numberOfFilesWritten++;
-                                LocalFile.output(separator, report, outputFolderPath);
-                            }
-                            //Append report strings with Inquire and file writter results
-                            finalReport
-                                    .append("Number Of Inquire Queries: \t")
-                                    .append(numberOfInquireQueries)
-                                    .append("\n")
-                                    .append("Number Of Files Written: \t")
-                                    .append(numberOfFilesWritten)
-                                    .append("\n")
-                                    .append("Format count: \t\t\t\t")
-                                    .append(formatCount.size())
-                                    .append("\n")
-                                    .append("Format list: \t\t\t\t")
-                                    .append(formatCount)
-                                    .append("\n\n");
-
-                            //This block handles export to Google Sheets
-                            if (exportToSheets) {
-                                //Entry point to Google Sheets exporter class, returns a map with three lists, for updated, skipped and failed operations respectively.
-
-                                googleSheetsResults = GoogleSheetExport.load(googleCredentialsPath, googleCloudAppName, googleSheetId, outputFolderPath);
-
-                                List<String> updatedList = googleSheetsResults.get("updated");
-                                List<String> skippedList = googleSheetsResults.get("skipped");
-                                List<String> failedList = googleSheetsResults.get("failed");
-
-                                //Append Google Sheets export results to final report
-                                finalReport.append("Updated Google Sheets: \t\t")
-                                        .append(updatedList.size())
-                                        .append("\t")
-                                        .append(updatedList)
-                                        .append("\n")
-                                        .append("Skipped Google Sheets: \t\t")
-                                        .append(skippedList.size())
-                                        .append("\t")
-                                        .append(skippedList)
-                                        .append("\n")
-                                        .append("Failed Google Sheets: \t\t")
-                                        .append(failedList.size())
-                                        .append("\t")
-                                        .append(failedList)
-                                        .append("\n");
-                            }
-
-                            //This block controls export to Azure SQL
-                            if (exportToSql) {
-                                //Entry point for Azure SQL exporter class, returns a map on lists with the updated, skipped and failed tables.
-                                azureTablesResults = new AzureSqlExport().load(azureServerName, azureDatabaseName, azureUser, azurePassword, outputFolderPath);
-                                List<String> updatedList = azureTablesResults.get("updated");
-                                List<String> skippedList = azureTablesResults.get("skipped");
-                                List<String> failedList = azureTablesResults.get("failed");
-
-                                finalReport.append("Updated Azure SQL Tables: \t")
-                                        .append(updatedList.size())
-                                        .append("\t")
-                                        .append(updatedList)
-                                        .append("\n")
-                                        .append("Skipped Azure SQL Tables: \t")
-                                        .append(skippedList.size())
-                                        .append("\t")
-                                        .append(skippedList)
-                                        .append("\n")
-                                        .append("Failed Azure SQL Tables: \t")
-                                        .append(failedList.size())
-                                        .append("\t")
-                                        .append(failedList)
-                                        .append("\n");
-                            }
-                            System.out.println(finalReport);
-                        }
-                    } else {
-                        throw new IOException("Path provided does not contain a valid properties file");
-                    }
+        //Specific properties
+        //Google Sheets
+        if (googleCredentialsPath == null && exportToSheets) {
+            missingProperties += "\t- googleCredentialsPath: mandatory. The path to the Google API credentials file.\n";
+        }
+        if (googleCloudAppName == null && exportToSheets) {
+            missingProperties += "\t- googleCloudAppName: mandatory. The name of the Google App to which the service account is linked, e.g. Inquire Exporter.\n";
+        }
+        if (googleSheetId == null && exportToSheets) {
+            missingProperties += "\t- googleSheetId: mandatory. The Id of the Google Sheet document. It is a long hash that can be found in the browser's url bar.\n";
+        }
+        //Azure SQL
+        if (azureServerName == null && exportToSql) {
+            missingProperties += "\t- azureServerName: mandatory. The name of the server as it appears in the Azure AQL Database overview.\n";
+        }
+        if (azureDatabaseName == null && exportToSql) {
+            missingProperties += "\t- azureDatabaseName: mandatory. The name of the database as it appears in the Azure AQL Database overview.\n";
+        }
+        if (azureUser == null && exportToSql) {
+            missingProperties += "\t- azureUser: mandatory. Database username with permissions to create tables and add data.\n";
+        }
+        if (azurePassword == null && exportToSql) {
+            missingProperties += "\t- azurePassword: mandatory. Password for the Azure user.\n";
+        }
+
+
+        //Check if any mandatory ones have been missed
+        if (!missingProperties.equals("")) {
+            mandatoryMissing = true;
+        }
 
+        //Check optionals
+        if (separator == null) {
+            missingProperties += "\t- separator: optional. Separator used between fields in the output files. Defaults to 'json'.\n";
+        }
+        if (timeout == null) {
+            missingProperties += "\t- timeout: optional. Timeout for queries. Defaults to 30 seconds.\n";
+        }
+
+        if (!missingProperties.equals("")) {
+            String errorString = (mandatoryMissing ? "ERROR:" : "WARNING:") + " Missing configuration properties. \n"
+                    + "The following could not be found or had identifiable problems: \n"
+                    + missingProperties;
+            System.out.println(errorString);
+            if (mandatoryMissing) {
+                throw new RuntimeException("Configuration File missing mandatory fields.");
+            }
+        }
+
+
+        //Apply defaults for export type
+        separator = separator != null ? separator : "json";
+        timeout = timeout != null ? timeout : "30";
+        //The results of several LDS are merged once all of them finished
+        if (streamResults && InquireData.splitLdsNames(lds_name).size() > 1) {
+            System.out.println("WARNING: streamResults is not used with several LDS, the files are written once all queries finished.");
+            streamResults = false;
+        }
+
+        //These values are to initialize reporting variables
+        int numberOfInquireQueries = 0;
+        int numberOfFilesWritten = 0;
+        HashSet<String> formatCount = new HashSet<>();
+        Map<String, List<String>> googleSheetsResults = null;
+        Map<String, List<String>> azureTablesResults = null;
+        List<String> failedExports = Collections.emptyList();
+        StringBuilder finalReport = new StringBuilder(2048)
+                .append("\n\n\t**************Execution Report**************\n\nFile Name: \t\t\t\t\t")
+                .append(fileName)
+                .append("\n");
+
+
+        //Create json file if requested separator is not json and Google Sheet export is requested
+        List<String> outputSeparators = new ArrayList<>();
+        if (exportToSheets && !separator.equals("json")) {
+            outputSeparators.add("json");
+        }
+        //Create CSV file if requested separator is not "," and Azure SQL export is requested.
+        //TODO => Allow for string csv to be used in config in place of ","
+        if (exportToSql && !separator.equals(",")) {
+            outputSeparators.add(",");
+        }
+        //Create report file with separator if it wasn't created for the export options above.
+        outputSeparators.add(separator);
+
+        // This block will only execute if new reports are needed, otherwise it will use the current reports in the output directory
+        boolean reportReady = true;
+        if (!exportOnly) {
+            //When streaming, the files of each query are written while Inquire is still running it, instead of after all queries finished.
+            final String reportFolderPath = outputFolderPath;
+            Function<String, ResultConsumer> resultConsumers = !streamResults ? null : reportName -> {
+                try {
+                    return LocalFile.openWriters(outputSeparators, reportName, reportFolderPath, jsonPassthrough);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            };
+            //Each query is written to its files and exported as soon as it finished on Inquire, while the others keep running.
+            final Map<String, List<String>> sheetsResults = exportToSheets ? GoogleSheetExport.newResults() : null;
+            final Map<String, List<String>> tablesResults = exportToSql ? AzureSqlExport.newResults() : null;
+            ExportPipeline.FileExporter sheetsExporter = !exportToSheets ? null
+                    : configWorkers.limitSink(sheetsSink, GoogleSheetExport.fileExporter(googleCredentialsPath, googleCloudAppName, googleSheetId, sheetsResults));
+            ExportPipeline.FileExporter sqlExporter = !exportToSql ? null
+                    : configWorkers.limitSink(sqlSink, AzureSqlExport.fileExporter(azureServerName, azureDatabaseName, azureUser, azurePassword, azureExportDelay, tablesResults));
+            QuerySettings settings = new QuerySettings();
+            settings.timeWindows = timeWindows;
+            settings.maxConcurrentQueries = maxConcurrentQueries;
+            settings.maxPollInterval = maxPollInterval;
+            settings.transportSettings = transportSettings;
+            settings.tokenCache = tokenCache;
+            settings.catalog = catalog;
+            settings.watermarks = watermarks;
+            settings.resultCache = resultCache;
+            settings.queryHistory = queryHistory;
+            settings.executionJournals = resumeQueries ? ldsName -> ExecutionJournal.forLds(cacheStore, backend_URL, ldsName) : null;
+            settings.executionCoalescer = executionCoalescer;
+            settings.concurrencyLimiter = adaptiveConcurrency ? ConcurrencyLimiter.forBackend(backend_URL, maxConcurrentQueries, adaptiveLatencyThreshold) : null;
+            ExportPipeline pipeline = new ExportPipeline(outputSeparators, outputFolderPath, streamResults, jsonPassthrough, sheetsExporter, sqlExporter);
+            //This is the entry point for the Inquire Data class, returns a serialized Map with the data of all shared queries (or requested one) in the LDS.
+            HashMap<String, Iterable<Map<String, Object>>> reportMap;
+            long receivedBytes = TransferStats.getReceivedBytes();
+            long decodedBytes = TransferStats.getDecodedBytes();
+            try {
+                reportMap = InquireData.get(queryName, dateFrom, dateTo, backend_URL, username, password, apiToken, lds_name, timeout, esPageSize, apiVersion, settings, resultConsumers, pipeline::accept);
+            } finally {
+                pipeline.finish();
             }
-        } catch (Exception e) {
-            //Catch all exception
-            printHelp();
-            System.out.println("Error: " + e.getClass() + " ----- " + e.getMessage());
-            e.printStackTrace(System.out);
+            if (reportMap != null) {
+                //Update number of run queries for report
+                numberOfInquireQueries = reportMap.size();
+
+                //The files of each query have been written by the pipeline
+                for (Map.Entry<String, Iterable<Map<String, Object>>> report : reportMap.entrySet()) {
+                    if (!pipeline.isWritten(report.getKey())) {
+                        continue;
+                    }
+                    for (String outputSeparator : outputSeparators) {
+                        formatCount.add(outputSeparator.equals(",") ? "csv" : outputSeparator);
+                        numberOfFilesWritten++;
+                    }
+                }
+                //The next incremental run starts where the results just written end
+                if (watermarks != null) {
+                    watermarks.commit(pipeline::isWritten);
+                }
+                //Append report strings with Inquire and file writter results
+                finalReport
+                        .append("Number Of Inquire Queries: \t")
+                        .append(numberOfInquireQueries)
+                        .append("\n")
+                        .append("Number Of Files Written: \t")
+                        .append(numberOfFilesWritten)
+                        .append("\n")
+                        .append("Format count: \t\t\t\t")
+                        .append(formatCount.size())
+                        .append("\n")
+                        .append("Format list: \t\t\t\t")
+                        .append(formatCount)
+                        .append("\n")
+                        .append("Bytes received: \t\t\t")
+                        .append(TransferStats.getReceivedBytes() - receivedBytes)
+                        .append("\t(")
+                        .append(TransferStats.getDecodedBytes() - decodedBytes)
+                        .append(" decompressed)")
+                        .append("\n\n");
+                googleSheetsResults = sheetsResults;
+                azureTablesResults = tablesResults;
+                failedExports = pipeline.getFailedExports();
+            } else {
+                reportReady = false;
+            }
+        } else {
+            //The reports already in the output directory are exported as they are
+            if (exportToSheets) {
+                //Entry point to Google Sheets exporter class, returns a map with three lists, for updated, skipped and failed operations respectively.
+                configWorkers.acquireSink(sheetsSink);
+                try {
+                    googleSheetsResults = GoogleSheetExport.load(googleCredentialsPath, googleCloudAppName, googleSheetId, outputFolderPath);
+                } finally {
+                    configWorkers.releaseSink(sheetsSink);
+                }
+            }
+            if (exportToSql) {
+                //Entry point for Azure SQL exporter class, returns a map on lists with the updated, skipped and failed tables.
+                configWorkers.acquireSink(sqlSink);
+                try {
+                    azureTablesResults = new AzureSqlExport(azureExportDelay).load(azureServerName, azureDatabaseName, azureUser, azurePassword, outputFolderPath);
+                } finally {
+                    configWorkers.releaseSink(sqlSink);
+                }
+            }
+        }
+
+        if (reportReady) {
+            //This block handles export to Google Sheets
+            if (googleSheetsResults != null) {
+                List<String> updatedList = googleSheetsResults.get("updated");
+                List<String> skippedList = googleSheetsResults.get("skipped");
+                List<String> failedList = googleSheetsResults.get("failed");
+
+                //Append Google Sheets export results to final report
+                finalReport.append("Updated Google Sheets: \t\t")
+                        .append(updatedList.size())
+                        .append("\t")
+                        .append(updatedList)
+                        .append("\n")
+                        .append("Skipped Google Sheets: \t\t")
+                        .append(skippedList.size())
+                        .append("\t")
+                        .append(skippedList)
+                        .append("\n")
+                        .append("Failed Google Sheets: \t\t")
+                        .append(failedList.size())
+                        .append("\t")
+                        .append(failedList)
+                        .append("\n");
+            }
+
+            //This block controls export to Azure SQL
+            if (azureTablesResults != null) {
+                List<String> updatedList = azureTablesResults.get("updated");
+                List<String> skippedList = azureTablesResults.get("skipped");
+                List<String> failedList = azureTablesResults.get("failed");
+
+                finalReport.append("Updated Azure SQL Tables: \t")
+                        .append(updatedList.size())
+                        .append("\t")
+                        .append(updatedList)
+                        .append("\n")
+                        .append("Skipped Azure SQL Tables: \t")
+                        .append(skippedList.size())
+                        .append("\t")
+                        .append(skippedList)
+                        .append("\n")
+                        .append("Failed Azure SQL Tables: \t")
+                        .append(failedList.size())
+                        .append("\t")
+                        .append(failedList)
+                        .append("\n");
+            }
+            System.out.println(finalReport);
+        }
+        //As when exporting after all queries finished, a failed export fails the config
+        if (!failedExports.isEmpty()) {
+            throw new IOException("Could not export " + failedExports);
         }
     }
 
@@ -371,11 +673,12 @@ public class Main {
     private static void printHelp() {
         System.out.println(
                 "\n\n*********************************************************************" +
-                        "\nUsage: java -jar \"Inquire_Extract.jar\" [--config=<config> --google_sheets --azure_sql --export_only --query=<query> --from=<from_date> --to=<to_date> --help]\n" +
+                        "\nUsage: java -jar \"Inquire_Extract.jar\" [--config=<config> --google_sheets --azure_sql --export_only --query=<query> --from=<from_date> --to=<to_date> --time_windows=<split> --refresh_catalog --workers=<workers> --workers_per_backend=<workers> --workers_per_sink=<workers> --daemon --help]\n" +
                         "Parameters:\n"
                         + "- config: Optional. \n" +
                         "\tConfiguration file or directory e.g. etc/ or test_config.properties.\n" +
                         "\tIf a directory is selected the application will iterate over all *_config.properties files found in the directory.\n" +
+                        "\tA query run by several configs of the directory with the same backend, LDS, TQL, range and esPageSize runs on Inquire once.\n" +
                         "\tDefaults to application root.\n"
                         + "- api_version: Optional.\n" +
                         "\tVersion of the Inquire API to use. Defaults to the latest.\n"
@@ -384,7 +687,7 @@ public class Main {
                         + "- azure_sql: Optional.\n" +
                         "\tExport the report data to Azure SQL Database Requires Azure Config in config file. Will generate .csv reports in a addition to any specified be the separator.\n"
                         + "- export_only: Optional.\n" +
-                        "\tExport the report data to either Google Sheets or SQL (or both) depending on the options above, without generating new reports from Inquire, but using the files already there. Can be used to re-run exports without polling again.\n"
+                        "\tExport the report data to either Google Sheets or SQL (or both) depending on the options above, without generating new reports from Inquire, but using the files already there. Can be used to re-run exports without polling again. Without it, each query is exported as soon as its files are written, while the other queries of the config are still running.\n"
                         + "- query: Optional.\n" +
                         "\tName of published query to fetch. This is not case-sensitive.\n" +
                         "\tDefaults to the value 'all' which produces all published queries in the LDS.\n"
@@ -394,9 +697,24 @@ public class Main {
                         + "- to: Optional.\n" +
                         "\tDate for the query search to end. Valid format is yyyy-MM-ddTHH:mm:ssZ e.g. 2017-08-31T23:55:01Z.\n" +
                         "\tMust have a from_date if used.\n"
+                        + "- time_windows: Optional.\n" +
+                        "\tSplit the --from/--to range into windows run as separate executions and merged in window order: 'day', 'week' or a number of windows of equal length.\n" +
+                        "\tUp to maxConcurrentQueries windows run at the same time, a failing window is run once more.\n"
                         + "- esPageSize: Optional.\n" +
                         "\tThe esPageSize parameter as per\n" +
                         "\thttps://developers.teneo.ai/documentation/latest/swagger/teneo-inquire/swagger/index.html#/tql/submitQuery\n"
+                        + "- refresh_catalog: Optional.\n" +
+                        "\tList the shared queries on Inquire even if the list cached in cacheDir has not expired.\n"
+                        + "- workers: Optional.\n" +
+                        "\tNumber of configs of the directory processed at the same time, each with its own output folder and report. A config that fails is reported and the others go on.\n" +
+                        "\tThe bytes received in the report of a config include those of the configs running at the same time. Defaults to 1, one config after the other.\n"
+                        + "- workers_per_backend: Optional.\n" +
+                        "\tNumber of configs processed at the same time on one Inquire backend. The other configs run meanwhile. Defaults to --workers.\n"
+                        + "- workers_per_sink: Optional.\n" +
+                        "\tNumber of configs exporting to one Google Sheet or Azure SQL database at the same time. Defaults to --workers.\n"
+                        + "- daemon: Optional.\n" +
+                        "\tKeep running and process each config on the schedule in its properties file, instead of once. The HTTP clients, the access tokens and the caches in memory are kept between runs.\n" +
+                        "\tA config whose previous run has not finished when it is due again skips that time. Configs without a schedule are not run.\n"
                         + "- help: Optional.\n" +
                         "\tShow this message.\n\n" +
                         "Configurations:\n" +
@@ -410,7 +728,7 @@ public class Main {
                         "- apiToken: Mandatory if not authenticating via username and password.\n" +
                         "\tApi token to access the LDS.\n" +
                         "- lds: Mandatory.\n" +
-                        "\tThe name of the LDS in Inquire.\n" +
+                        "\tThe name of the LDS in Inquire. Several LDS separated by commas run in parallel, with the results of each query merged into one file with an added 'lds' column, replacing an 'lds' column of the query.\n" +
                         "- googleCredentialsPath: Mandatory if --google_sheets is used.\n" +
                         "\tThe path to the Google API credentials file.\n" +
                         "- googleCloudAppName: Mandatory if --google_sheets is used.\n" +
@@ -425,12 +743,74 @@ public class Main {
                         "\tDatabase username with permissions to create tables and add data.\n" +
                         "- azurePassword: Mandatory if --azure_sql is used.\n" +
                         "\tPassword for the Azure user.\n" +
+                        "- azureExportDelay: Optional.\n" +
+                        "\tMilliseconds to wait before exporting each file to Azure SQL, to slow down the requests to the server. Defaults to 0.\n" +
                         "- separator: Optional.\n" +
                         "\tSeparator used between fields in the output files. Defaults to 'json'.\n" +
                         "- timeout: Optional.\n" +
                         "\tTimeout for queries. Defaults to 30 seconds.\n" +
                         "- apiVersion: Optional.\n" +
                         "\tVersion of the Inquire API to use. Defaults to the latest. If specified as a parameter the parameter takes preference.\n" +
+                        "- maxConcurrentQueries: Optional.\n" +
+                        "\tMaximum number of shared queries of the LDS submitted to Inquire and polled at the same time. Defaults to 1, one query after the other.\n" +
+                        "- adaptiveConcurrency: Optional.\n" +
+                        "\tStart with one query in flight per backend, shared by the configs using it with the same maxConcurrentQueries and adaptiveLatencyThreshold, and add more while Inquire answers within adaptiveLatencyThreshold, up to maxConcurrentQueries; halve them on timeouts, server errors or failed queries. A query failing on Inquire, e.g. with an error in its TQL, halves them for all these configs. Defaults to false.\n" +
+                        "- adaptiveLatencyThreshold: Optional.\n" +
+                        "\tMilliseconds a submit or poll may take for adaptiveConcurrency to add queries in flight. A poll is measured without the timeout Inquire may hold it. Defaults to 10000.\n" +
+                        "- maxPollInterval: Optional.\n" +
+                        "\tMaximum time in milliseconds between two polls of a running query. Defaults to 10000.\n" +
+                        "- streamResults: Optional.\n" +
+                        "\tWrite the partial results of each query to the output files while Inquire is still running it. Defaults to false.\n" +
+                        "- jsonPassthrough: Optional.\n" +
+                        "\tCopy the results to the JSON files as received from Inquire instead of parsing and re-serializing them. Defaults to false.\n" +
+                        "- tokenCache: Optional.\n" +
+                        "\tReuse the access token of the user for all configs with the same backend and user instead of logging in and out for each. Defaults to false.\n" +
+                        "- tokenCacheFile: Optional.\n" +
+                        "\tFile keeping the cached access tokens for the next runs, readable by the owner only. Enables tokenCache.\n" +
+                        "- tokenCacheTtl: Optional.\n" +
+                        "\tSeconds a cached access token is used after logging in. Defaults to 1800.\n" +
+                        "- cacheDir: Optional.\n" +
+                        "\tFolder keeping data between runs, such as the shared queries of each LDS with a hash of their TQL to report the queries changed since the last run, and the last run of each query, used to submit the longest queries first.\n" +
+                        "- catalogTtl: Optional.\n" +
+                        "\tSeconds the shared queries cached in cacheDir are used without listing them on Inquire. Defaults to 0, always list them.\n" +
+                        "- incremental: Optional.\n" +
+                        "\tRun each query from where its last successful run ended up to now, unless --from and --to are given. Requires cacheDir. Defaults to false.\n" +
+                        "- incrementalOverlap: Optional.\n" +
+                        "\tSeconds before the end of the last successful run an incremental run starts from, to pick up sessions that reached the LDS late. Defaults to 0.\n" +
+                        "- resultCache: Optional.\n" +
+                        "\tKeep the results of every query with a from and a to in cacheDir, compressed, and use them instead of running the query again with the same TQL, range and esPageSize. Queries without from and to always run. Requires cacheDir. Defaults to false.\n" +
+                        "- resultCacheTtl: Optional.\n" +
+                        "\tSeconds cached results are used after they were written. Defaults to 86400.\n" +
+                        "- resultCacheMaxSize: Optional.\n" +
+                        "\tMegabytes the cached results may take before the least recently used ones are deleted. Defaults to 1024.\n" +
+                        "- esPageSizeTuning: Optional.\n" +
+                        "\tChoose the esPageSize of each query from the throughput of its previous runs, recorded in cacheDir. --esPageSize wins if given. Requires cacheDir. Defaults to false.\n" +
+                        "- esPageSizeMin: Optional.\n" +
+                        "\tSmallest esPageSize chosen by esPageSizeTuning. Defaults to 100.\n" +
+                        "- esPageSizeMax: Optional.\n" +
+                        "\tLargest esPageSize chosen by esPageSizeTuning. Defaults to 10000.\n" +
+                        "- resumeQueries: Optional.\n" +
+                        "\tRecord the id of every submitted query in cacheDir until it finishes, so a run interrupted by a crash or restart is resumed by polling the queries it left running instead of submitting them again. Requires cacheDir. Defaults to false.\n" +
+                        "- schedule: Optional.\n" +
+                        "\tWhen to process the config with --daemon, as a cron expression with the five fields minute, hour, day of month, month and day of week in the time zone of the system, e.g. '*/5 * * * *' every five minutes.\n" +
+                        "- httpConnector: Optional.\n" +
+                        "\tHTTP connector used to reach Inquire: 'default' (JDK HttpURLConnection) or 'apache' (pooled Apache HttpClient). Defaults to 'default'.\n" +
+                        "- httpMaxConnections: Optional.\n" +
+                        "\tMaximum number of pooled connections with the apache connector. Defaults to 20.\n" +
+                        "- httpMaxConnectionsPerRoute: Optional.\n" +
+                        "\tMaximum number of pooled connections to one backend with the apache connector. Defaults to 10.\n" +
+                        "- httpIdleTimeout: Optional.\n" +
+                        "\tSeconds after which idle pooled connections are closed with the apache connector. Defaults to 60.\n" +
+                        "- httpConnectTimeout: Optional.\n" +
+                        "\tConnect timeout in milliseconds. Defaults to 0, no timeout.\n" +
+                        "- httpReadTimeout: Optional.\n" +
+                        "\tRead timeout in milliseconds. Defaults to 0, no timeout.\n" +
+                        "- httpSocketBufferSize: Optional.\n" +
+                        "\tSocket send and receive buffer size in bytes with the apache connector. Defaults to 0, the system default.\n" +
+                        "- httpCompression: Optional.\n" +
+                        "\tAsk Inquire for gzip or deflate compressed responses. Defaults to true.\n" +
+                        "- httpAsyncThreads: Optional.\n" +
+                        "\tNumber of threads sending the submits and polls of the queries in flight. Defaults to 10.\n" +
                         "\n*********************************************************************"
 
         );
@@ -0,0 +1,124 @@
+package inquireetl;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * How the last successful run of each query went, by backend, LDS and query name, kept in the {@link CacheStore}:
+ * the esPageSize it was submitted with, the progress Inquire reported, the size of its results and how long it took.
+ * With an {@link EsPageSizeTuner}, every run also decides the esPageSize of the next run of the query.
+ * Queries that never finished only have the time estimate Inquire gave when they were submitted.
+ */
+public class QueryHistory {
+
+    private final CacheStore cacheStore;
+    private final EsPageSizeTuner tuner;
+
+    /**
+     * @param cacheStore Where the history is kept.
+     * @param tuner Chooses the esPageSize of each query, null to leave it to Inquire.
+     */
+    public QueryHistory(CacheStore cacheStore, EsPageSizeTuner tuner) {
+        this.cacheStore = cacheStore;
+        this.tuner = tuner;
+    }
+
+    /**
+     * @return the last successful run of the query, null if there is none.
+     */
+    public Entry get(String backendUrl, String ldsName, String queryName) {
+        return cacheStore.read(cacheStore.file("history", backendUrl, ldsName, queryName), Entry.class);
+    }
+
+    /**
+     * @return the esPageSize to submit the query with, null to leave it to Inquire.
+     */
+    public Integer getEsPageSize(String backendUrl, String ldsName, String queryName) {
+        return tuner != null ? tuner.choose(get(backendUrl, ldsName, queryName)) : null;
+    }
+
+    /**
+     * Records the time estimate Inquire gave for a submitted query, if the query never finished before.
+     * @param timeEstimate immediate, fast or slow, null if unknown.
+     */
+    public void recordTimeEstimate(String backendUrl, String ldsName, String queryName, String timeEstimate) {
+        if (timeEstimate == null || get(backendUrl, ldsName, queryName) != null) {
+            return;
+        }
+        final Entry entry = new Entry();
+        entry.timeEstimate = timeEstimate;
+        try {
+            cacheStore.write(cacheStore.file("history", backendUrl, ldsName, queryName), entry);
+        } catch (IOException e) {
+            System.out.println("Could not record the time estimate of query " + queryName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Orders queries longest first, so the slowest ones do not start last and stretch the run:
+     * queries never submitted come first as they may be the slowest, then those Inquire estimated slow without a finished run,
+     * then the finished ones by decreasing duration, then those estimated fast and immediate.
+     */
+    public List<String> longestFirst(String backendUrl, String ldsName, Collection<String> queryNames) {
+        final Map<String, Entry> entries = new HashMap<>();
+        for (String queryName : queryNames) {
+            entries.put(queryName, get(backendUrl, ldsName, queryName));
+        }
+        final List<String> ordered = new ArrayList<>(queryNames);
+        ordered.sort(Comparator.comparingInt((String queryName) -> rank(entries.get(queryName)))
+                .thenComparingLong(queryName -> entries.get(queryName) != null ? -entries.get(queryName).durationMillis : 0));
+        return ordered;
+    }
+
+    private static int rank(Entry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        if (entry.finishedAt > 0) {
+            return 2;
+        }
+        return "slow".equals(entry.timeEstimate) ? 1 : "fast".equals(entry.timeEstimate) ? 3 : 4;
+    }
+
+    /**
+     * Records a successful run of the query. A failure to write is reported, the previous run is then kept.
+     */
+    public void record(String backendUrl, String ldsName, String queryName, Entry run) {
+        if (tuner != null) {
+            final Entry previous = get(backendUrl, ldsName, queryName);
+            if (run.esPageSize != null && run.esPageSize == tuner.choose(previous)) {
+                tuner.tune(previous, run);
+            } else if (previous != null) {
+                // A run with an esPageSize given on the command line does not steer the tuning
+                run.throughput = previous.throughput;
+                run.nextEsPageSize = previous.nextEsPageSize;
+                run.esPageSize = previous.esPageSize;
+            }
+        }
+        try {
+            cacheStore.write(cacheStore.file("history", backendUrl, ldsName, queryName), run);
+        } catch (IOException e) {
+            System.out.println("Could not record the run of query " + queryName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One run of a query, over all its windows.
+     */
+    public static class Entry {
+        public Integer esPageSize;
+        public int pagesProcessed;
+        public long seenResults;
+        // Mean execution time of a page on the server, in milliseconds
+        public double meanExecutionTime;
+        public long durationMillis;
+        public long finishedAt;
+        // Bytes of the results read from Inquire
+        public long resultBytes;
+        // Time estimate of Inquire when the query was submitted: immediate, fast or slow
+        public String timeEstimate;
+        // Sessions per millisecond of page execution time, the page size over the mean execution time of a page, null if the run had too few pages to tell
+        public Double throughput;
+        public Integer nextEsPageSize;
+    }
+}
@@ -0,0 +1,658 @@
+package inquireetl;
+
+import inquireetl.inquirehandler.AbstractInquireHandler;
+import inquireetl.inquirehandler.AbstractPoller;
+import inquireetl.inquirehandler.ConcatenatedResult;
+import inquireetl.inquirehandler.ResultConsumer;
+import inquireetl.inquirehandler.SpooledResult;
+
+import javax.ws.rs.NotAuthorizedException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Submits the shared queries of an LDS ahead of time and keeps them polled together, so Inquire can work on
+ * several queries in parallel instead of one after the other.
+ * At most {@link QueryScheduler#maxConcurrentQueries} queries are in flight at any time; a value of 1 reproduces the
+ * one-query-at-a-time behaviour. With a {@link ConcurrencyLimiter}, fewer may be in flight while the backend is slow
+ * or overloaded.
+ */
+public class QueryScheduler {
+
+    private final AbstractInquireHandler inquireHandler;
+    private final String ldsName;
+    private final int maxConcurrentQueries;
+    private ResultCache resultCache;
+    private Map<String, String> tqlHashes;
+    private QueryHistory queryHistory;
+    private ExecutionJournal executionJournal;
+    private boolean movingTo = false;
+    // The "to" of the executions resumed from the journal with an earlier "to" than requested, by query name
+    private final Map<String, String> resumedTo = new HashMap<>();
+    private ConcurrencyLimiter concurrencyLimiter;
+    private ExecutionCoalescer executionCoalescer;
+    private BiConsumer<String, Iterable<Map<String, Object>>> finishedQueries;
+
+    /**
+     * @param inquireHandler       - Logged in handler used to submit the queries
+     * @param ldsName              - The name of the Log Data Source in Inquire
+     * @param maxConcurrentQueries - Maximum number of queries submitted and not yet finished at the same time
+     */
+    public QueryScheduler(AbstractInquireHandler inquireHandler, String ldsName, int maxConcurrentQueries) {
+        if (maxConcurrentQueries < 1) {
+            throw new IllegalArgumentException("maxConcurrentQueries must be at least 1, received " + maxConcurrentQueries);
+        }
+        this.inquireHandler = inquireHandler;
+        this.ldsName = ldsName;
+        this.maxConcurrentQueries = maxConcurrentQueries;
+    }
+
+    /**
+     * Takes the results of executions with a "from" and a "to" from the cache instead of submitting them, and caches the
+     * results of the others. Executions without a closed range always run on Inquire.
+     * @param resultCache - The cache, null to always submit
+     * @param tqlHashes - Hash of the TQL of each query, so results of a query whose TQL changed are not taken from the cache
+     */
+    public void setResultCache(ResultCache resultCache, Map<String, String> tqlHashes) {
+        this.resultCache = resultCache;
+        this.tqlHashes = tqlHashes;
+    }
+
+    /**
+     * @param queryHistory - Where to record the progress and duration of every query that ran on Inquire, and to order the
+     *                     queries longest first from. Null not to record them and to keep the given order.
+     */
+    public void setQueryHistory(QueryHistory queryHistory) {
+        this.queryHistory = queryHistory;
+    }
+
+    /**
+     * @param executionJournal - Where the submitted executions are recorded until they finish, so a later run can poll
+     *                         those left running instead of submitting them again. Null not to record them.
+     */
+    public void setExecutionJournal(ExecutionJournal executionJournal) {
+        this.executionJournal = executionJournal;
+    }
+
+    /**
+     * @param movingTo - Whether the "to" of the executions is the start of the run, as in incremental runs. An execution
+     *                 an earlier run left running with the same parameters but an earlier "to" is then polled again,
+     *                 and its results end at that "to", see {@link QueryScheduler#getResumedTo(String)}.
+     */
+    public void setMovingTo(boolean movingTo) {
+        this.movingTo = movingTo;
+    }
+
+    /**
+     * @return the "to" the results of the query end at when its execution was resumed with an earlier "to" than requested, otherwise null.
+     */
+    public String getResumedTo(String queryName) {
+        return resumedTo.get(queryName);
+    }
+
+    /**
+     * @param concurrencyLimiter - Limits the queries in flight on the backend as it responds, below maxConcurrentQueries. Null for a fixed limit.
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * @param executionCoalescer - Results of the executions run by other configs of the run, used instead of submitting
+     *                           the same executions again, and kept for the later configs. An execution another config
+     *                           is running is waited for. Null to always submit.
+     */
+    public void setExecutionCoalescer(ExecutionCoalescer executionCoalescer) {
+        this.executionCoalescer = executionCoalescer;
+    }
+
+    /**
+     * @param finishedQueries - Receives the results of every query as soon as it finished, while the others keep running. Null if not needed.
+     */
+    public void setFinishedQueries(BiConsumer<String, Iterable<Map<String, Object>>> finishedQueries) {
+        this.finishedQueries = finishedQueries;
+    }
+
+    /**
+     * Runs all the given queries with the same parameters. A failing query is reported and skipped, the others keep running.
+     * Submits and polls are sent asynchronously, so the queries in flight wait for Inquire in parallel rather than
+     * one poll after the other; their completions are handled on the calling thread.
+     * @param queryNames - Published names of the shared queries to run
+     * @param params - Query parameters passed to submitSharedQuery
+     * @param resultConsumers - Creates the consumer receiving the results of a query while it runs, by query name. Null if not needed.
+     * @return the results of the successful queries, in the order of queryNames
+     * @throws InterruptedException Interrupted while waiting for the next poll
+     */
+    public LinkedHashMap<String, Iterable<Map<String, Object>>> run(List<String> queryNames, Map<String, Object> params, Function<String, ResultConsumer> resultConsumers) throws InterruptedException {
+        final LinkedHashMap<String, List<Map<String, Object>>> windowsByQuery = new LinkedHashMap<>();
+        for (String queryName : queryNames) {
+            windowsByQuery.put(queryName, Collections.singletonList(params));
+        }
+        return run(windowsByQuery, resultConsumers);
+    }
+
+    /**
+     * Runs each of the given queries once per window, each window with its own parameters, e.g. its own from and to.
+     * The windows of a query are separate executions on Inquire that count towards maxConcurrentQueries like any other.
+     * A failing window is submitted once more; if it fails again the whole query is reported and skipped.
+     * With several windows, the consumer of a query receives the results of each window once it and all windows before it finished.
+     * @param windowsByQuery - Query parameters passed to submitSharedQuery, one map per window, by published name of the shared queries to run
+     * @param resultConsumers - Creates the consumer receiving the results of a query while it runs, by query name. Null if not needed.
+     * @return the results of the successful queries, in the order of windowsByQuery, with the rows of the windows in window order
+     * @throws InterruptedException Interrupted while waiting for the next poll
+     */
+    public LinkedHashMap<String, Iterable<Map<String, Object>>> run(LinkedHashMap<String, List<Map<String, Object>>> windowsByQuery, Function<String, ResultConsumer> resultConsumers) throws InterruptedException {
+        final Deque<Execution> pending = new ArrayDeque<>();
+        final Map<String, QueryState> queries = new HashMap<>();
+        // The longest queries are submitted first, so they do not set the end of the run by starting last
+        final List<String> submissionOrder = queryHistory != null
+                ? queryHistory.longestFirst(inquireHandler.getBackendUrl(), ldsName, windowsByQuery.keySet())
+                : new ArrayList<>(windowsByQuery.keySet());
+        if (!submissionOrder.equals(new ArrayList<>(windowsByQuery.keySet()))) {
+            System.out.println("Submitting the queries longest first: " + submissionOrder);
+        }
+        for (String queryName : submissionOrder) {
+            final List<Map<String, Object>> windows = windowsByQuery.get(queryName);
+            queries.put(queryName, new QueryState(windows.size()));
+            for (int window = 0; window < windows.size(); window++) {
+                pending.add(new Execution(queryName, window, windows.size(), windows.get(window)));
+            }
+        }
+        final List<Execution> executions = new ArrayList<>(pending);
+        final Map<Execution, CompletableFuture<AbstractPoller>> submitting = new HashMap<>();
+        final LinkedHashMap<Execution, AbstractPoller> inFlight = new LinkedHashMap<>();
+        final Map<Execution, CompletableFuture<Boolean>> polling = new HashMap<>();
+        // Executions waiting for another config running the same execution, see ExecutionCoalescer
+        final Map<Execution, CompletableFuture<Void>> waiting = new HashMap<>();
+        final Map<String, Iterable<Map<String, Object>>> finished = new HashMap<>();
+        // Executions whose submit or poll completed, in completion order
+        final BlockingQueue<Execution> completed = new LinkedBlockingQueue<>();
+        // Access token sent with the last submit or poll of each execution, and the executions whose last request was sent again after logging in again
+        final Map<Execution, String> requestTokens = new HashMap<>();
+        final Set<Execution> reauthenticated = new HashSet<>();
+
+        try {
+            while (!pending.isEmpty() || !submitting.isEmpty() || !inFlight.isEmpty() || !waiting.isEmpty()) {
+                // Top up the queries in flight before polling
+                while (submitting.size() + inFlight.size() < maxConcurrentQueries && !pending.isEmpty()) {
+                    final Execution execution = pending.poll();
+                    final QueryState query = queries.get(execution.queryName);
+                    if (query.failed) {
+                        endCoalesced(execution);
+                        continue;
+                    }
+                    Iterable<Map<String, Object>> cached = null;
+                    try {
+                        // A query submitted again after logging in again, or one of its later windows, keeps its consumer
+                        if (resultConsumers != null && query.consumer == null) {
+                            query.consumer = resultConsumers.apply(execution.queryName);
+                        }
+                        if (!execution.lookedUp) {
+                            cached = executionCoalescer != null ? executionCoalescer.get(inquireHandler.getBackendUrl(), ldsName, cacheKey(execution)) : null;
+                            if (cached != null) {
+                                System.out.println("Using the results of query " + execution + " run by another config");
+                            } else if (resultCache != null && hasClosedRange(execution) && (cached = resultCache.get(cacheKey(execution))) != null) {
+                                System.out.println("Using the cached results of query " + execution);
+                            }
+                            if (cached != null) {
+                                if (!execution.isWindowed() && query.consumer != null) {
+                                    query.consumer.replace(cached);
+                                }
+                                finish(execution, cached, query, finished);
+                                continue;
+                            }
+                            if (executionCoalescer != null) {
+                                final String key = cacheKey(execution);
+                                final CompletableFuture<Void> running = executionCoalescer.running(inquireHandler.getBackendUrl(), ldsName, key);
+                                if (running != null) {
+                                    System.out.println("Waiting for query " + execution + " run by another config");
+                                    waiting.put(execution, running);
+                                    running.whenComplete((done, ex) -> completed.add(execution));
+                                    continue;
+                                }
+                                execution.coalescedKey = key;
+                            }
+                            execution.lookedUp = true;
+                        }
+                    } catch (Exception ex) {
+                        endCoalesced(execution);
+                        if (cached != null && !query.windowResults.contains(cached)) {
+                            closeQuietly(cached);
+                        }
+                        fail(execution, query, ex);
+                        continue;
+                    }
+                    // Only executions that run on Inquire take a place on the backend
+                    if (concurrencyLimiter != null) {
+                        if (!concurrencyLimiter.tryAcquire()) {
+                            pending.addFirst(execution);
+                            break;
+                        }
+                        execution.admitted = true;
+                    }
+                    if (query.startedAt == 0) {
+                        query.startedAt = System.currentTimeMillis();
+                    }
+                    requestTokens.put(execution, inquireHandler.getAccessToken());
+                    final ExecutionJournal.Execution journaled = executionJournal != null ? executionJournal.get(journalKey(execution)) : null;
+                    if (journaled != null && (movingTo || Objects.equals(journaled.to, toParam(execution)))) {
+                        if (!Objects.equals(journaled.to, toParam(execution))) {
+                            // The results of the execution end where the run that submitted it started
+                            final Map<String, Object> resumedParams = new LinkedHashMap<>(execution.params);
+                            resumedParams.put("to", journaled.to);
+                            execution.params = resumedParams;
+                            resumedTo.put(execution.queryName, journaled.to);
+                        }
+                        System.out.println("Polling query " + execution + " left running by an earlier run, execution id " + journaled.id);
+                        execution.attached = true;
+                        submitting.put(execution, CompletableFuture.completedFuture(inquireHandler.attachQuery(journaled.id, execution.params)));
+                        completed.add(execution);
+                        continue;
+                    }
+                    System.out.println("Running query: " + execution + "\nWith params: " + execution.params);
+                    execution.requestSentAt = System.nanoTime();
+                    final CompletableFuture<AbstractPoller> submit = inquireHandler.submitSharedQueryAsync(ldsName, execution.queryName, execution.params);
+                    submitting.put(execution, submit);
+                    submit.whenComplete((poller, ex) -> completed.add(execution));
+                }
+
+                // Poll the queries in flight whose next poll is due and that are not being polled already
+                final long now = System.nanoTime();
+                for (Map.Entry<Execution, AbstractPoller> entry : inFlight.entrySet()) {
+                    if (!polling.containsKey(entry.getKey()) && entry.getValue().getPollScheduler().isDue(now)) {
+                        requestTokens.put(entry.getKey(), inquireHandler.getAccessToken());
+                        entry.getKey().requestSentAt = System.nanoTime();
+                        final CompletableFuture<Boolean> poll = entry.getValue().pollAsync();
+                        polling.put(entry.getKey(), poll);
+                        poll.whenComplete((done, ex) -> completed.add(entry.getKey()));
+                    }
+                }
+
+                if (concurrencyLimiter != null && !pending.isEmpty() && submitting.isEmpty() && inFlight.isEmpty()) {
+                    // All places on the backend are taken by the queries of other configs
+                    concurrencyLimiter.awaitRelease(1000);
+                }
+
+                // Wait for a submit or poll to complete, or for the earliest next poll of the queries waiting for it
+                final Long nextPollTime = earliestNextPollTime(inFlight, polling.keySet());
+                final Execution firstCompleted = nextPollTime != null
+                        ? completed.poll(Math.max(0, nextPollTime - System.nanoTime()), TimeUnit.NANOSECONDS)
+                        : submitting.isEmpty() && polling.isEmpty() && waiting.isEmpty() ? null : completed.take();
+                for (Execution execution = firstCompleted; execution != null; execution = completed.poll()) {
+                    if (waiting.remove(execution) != null) {
+                        // Takes the results the other config kept, or runs the execution if it ended without them
+                        pending.addFirst(execution);
+                        continue;
+                    }
+                    final QueryState query = queries.get(execution.queryName);
+                    try {
+                        if (submitting.containsKey(execution)) {
+                            final AbstractPoller poller = await(submitting.remove(execution));
+                            reauthenticated.remove(execution);
+                            if (concurrencyLimiter != null && !execution.attached) {
+                                concurrencyLimiter.onSuccess(latencyMillis(execution));
+                            }
+                            if (executionJournal != null && !execution.attached) {
+                                executionJournal.put(journalKey(execution), execution.queryName, poller.getExecutionId(), toParam(execution));
+                            }
+                            if (!execution.attached && query.timeEstimate == null) {
+                                query.timeEstimate = poller.getPollScheduler().getTimeEstimate();
+                                if (queryHistory != null) {
+                                    queryHistory.recordTimeEstimate(inquireHandler.getBackendUrl(), ldsName, execution.queryName, query.timeEstimate);
+                                }
+                            }
+                            // The windows of a query are handed to its consumer as a whole, in window order.
+                            // The partial updates of an execution polled again do not start at its first rows, so it gets the final result only.
+                            poller.setResultConsumer(execution.isWindowed() || execution.attached ? null : query.consumer);
+                            inFlight.put(execution, poller);
+                        } else {
+                            final boolean done = await(polling.remove(execution));
+                            reauthenticated.remove(execution);
+                            if (concurrencyLimiter != null) {
+                                // Inquire holds a poll up to its timeout while nothing changed, which says nothing about its load
+                                concurrencyLimiter.onSuccess(Math.max(0, latencyMillis(execution) - inFlight.get(execution).getLongPollMillis()));
+                            }
+                            if (done) {
+                                final AbstractPoller poller = inFlight.remove(execution);
+                                release(execution);
+                                final Iterable<Map<String, Object>> results = poller.getResults();
+                                query.addProgress(poller, results);
+                                if (executionJournal != null) {
+                                    executionJournal.remove(journalKey(execution));
+                                }
+                                if (query.failed) {
+                                    closeQuietly(results);
+                                    endCoalesced(execution);
+                                } else {
+                                    if (resultCache != null && hasClosedRange(execution)) {
+                                        resultCache.put(cacheKey(execution), results);
+                                    }
+                                    if (executionCoalescer != null) {
+                                        executionCoalescer.put(inquireHandler.getBackendUrl(), ldsName, cacheKey(execution), results);
+                                        // Resumed with an earlier "to", the results are not those the waiting configs asked for
+                                        endCoalesced(execution);
+                                    }
+                                    if (execution.attached && !execution.isWindowed() && query.consumer != null) {
+                                        query.consumer.replace(results);
+                                    }
+                                    finish(execution, results, query, finished);
+                                    if (queryHistory != null && finished.containsKey(execution.queryName)) {
+                                        queryHistory.record(inquireHandler.getBackendUrl(), ldsName, execution.queryName, query.toHistoryEntry(execution.params));
+                                    }
+                                }
+                            }
+                        }
+                    } catch (Exception ex) {
+                        if (concurrencyLimiter != null) {
+                            concurrencyLimiter.onFailure(ex);
+                        }
+                        if (shouldRetry(execution, ex, requestTokens, reauthenticated)) {
+                            if (!inFlight.containsKey(execution)) {
+                                release(execution);
+                                pending.addFirst(execution);
+                            }
+                            // A query in flight stays there and is polled again with the new access token
+                            continue;
+                        }
+                        final AbstractPoller poller = inFlight.remove(execution);
+                        if (poller != null) {
+                            poller.discardResults();
+                        }
+                        release(execution);
+                        if (executionJournal != null) {
+                            executionJournal.remove(journalKey(execution));
+                        }
+                        if (execution.attached) {
+                            // Inquire does not know the execution any more, or it failed meanwhile
+                            System.out.println("Could not poll query " + execution + " left running by an earlier run, submitting it again: " + ex.getMessage());
+                            execution.attached = false;
+                            execution.params = execution.requestedParams;
+                            resumedTo.remove(execution.queryName);
+                            pending.addFirst(execution);
+                            continue;
+                        }
+                        if (query.failed) {
+                            endCoalesced(execution);
+                            continue;
+                        }
+                        if (execution.isWindowed() && !execution.retried) {
+                            // A window is short, running it once more costs little compared to failing the whole query
+                            System.out.println("Window of query " + execution + " failed, submitting it again: " + ex.getMessage());
+                            execution.retried = true;
+                            pending.add(execution);
+                            continue;
+                        }
+                        endCoalesced(execution);
+                        fail(execution, query, ex);
+                    }
+                }
+            }
+        } finally {
+            // Configs waiting for an execution this one did not finish run it themselves
+            for (Execution execution : executions) {
+                endCoalesced(execution);
+            }
+        }
+
+        final LinkedHashMap<String, Iterable<Map<String, Object>>> resultsMap = new LinkedHashMap<>();
+        for (String queryName : windowsByQuery.keySet()) {
+            if (finished.containsKey(queryName)) {
+                resultsMap.put(queryName, finished.get(queryName));
+            }
+        }
+        return resultsMap;
+    }
+
+    /**
+     * Keeps the results of a finished execution. With several windows, hands the windows finished so far without a gap
+     * before them to the consumer of the query, and completes the query once all its windows finished, handing it to finishedQueries.
+     */
+    private void finish(Execution execution, Iterable<Map<String, Object>> results, QueryState query, Map<String, Iterable<Map<String, Object>>> finished) throws IOException {
+        if (!execution.isWindowed()) {
+            if (query.consumer != null) {
+                query.consumer.close();
+            }
+            finished.put(execution.queryName, results);
+            System.out.println("Query " + execution.queryName + " finished\n");
+            if (finishedQueries != null) {
+                finishedQueries.accept(execution.queryName, results);
+            }
+            return;
+        }
+        query.windowResults.set(execution.window, results);
+        System.out.println("Query " + execution + " finished\n");
+        while (query.handedOver < execution.windows && query.windowResults.get(query.handedOver) != null) {
+            if (query.consumer != null) {
+                query.consumer.append(query.windowResults.get(query.handedOver));
+            }
+            query.handedOver++;
+        }
+        if (query.handedOver == execution.windows) {
+            if (query.consumer != null) {
+                query.consumer.close();
+            }
+            finished.put(execution.queryName, new ConcatenatedResult(query.windowResults));
+            System.out.println("Query " + execution.queryName + " finished\n");
+            if (finishedQueries != null) {
+                finishedQueries.accept(execution.queryName, finished.get(execution.queryName));
+            }
+        }
+    }
+
+    /**
+     * Reports the query as failed and drops what it produced so far. Its executions still pending are skipped.
+     */
+    private static void fail(Execution execution, QueryState query, Exception ex) {
+        query.failed = true;
+        if (query.consumer != null) {
+            query.consumer.abort();
+        }
+        query.windowResults.forEach(QueryScheduler::closeQuietly);
+        printQueryError(execution.toString(), ex);
+    }
+
+    /**
+     * Gives back the place the execution took on the backend, if it took one.
+     */
+    private void release(Execution execution) {
+        if (execution.admitted) {
+            execution.admitted = false;
+            concurrencyLimiter.release();
+        }
+    }
+
+    /**
+     * Ends the execution this config runs for other configs, if any, so they run it themselves unless its results were kept.
+     */
+    private void endCoalesced(Execution execution) {
+        if (execution.coalescedKey != null) {
+            executionCoalescer.abandon(inquireHandler.getBackendUrl(), ldsName, execution.coalescedKey);
+            execution.coalescedKey = null;
+        }
+    }
+
+    private static long latencyMillis(Execution execution) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - execution.requestSentAt);
+    }
+
+    private String cacheKey(Execution execution) {
+        return ResultCache.key(inquireHandler.getBackendUrl(), ldsName, execution.queryName, tqlHashes != null ? tqlHashes.get(execution.queryName) : null, execution.params);
+    }
+
+    /**
+     * Whether the execution has both a "from" and a "to". Only those are taken from and kept in the result cache: the
+     * results of an open range depend on when it runs, so a cached one would be served stale.
+     */
+    private static boolean hasClosedRange(Execution execution) {
+        return execution.params.get("from") != null && execution.params.get("to") != null;
+    }
+
+    /**
+     * The key of the execution in the journal. It leaves out "to", so an incremental execution, whose "to" is the start
+     * of its run, is found by the next run; the "to" it was submitted with is kept in the journal entry instead.
+     */
+    private String journalKey(Execution execution) {
+        final Map<String, Object> params = new HashMap<>(execution.params);
+        params.remove("to");
+        return ResultCache.key(inquireHandler.getBackendUrl(), ldsName, execution.queryName, tqlHashes != null ? tqlHashes.get(execution.queryName) : null, params);
+    }
+
+    private static String toParam(Execution execution) {
+        final Object to = execution.params.get("to");
+        return to != null ? to.toString() : null;
+    }
+
+    /**
+     * Logs in again when Inquire rejected the access token of a request, so the request can be sent once more.
+     * @return whether the request of the query should be sent again.
+     */
+    private boolean shouldRetry(Execution execution, Exception ex, Map<Execution, String> requestTokens, Set<Execution> reauthenticated) {
+        return ex instanceof NotAuthorizedException
+                && reauthenticated.add(execution)
+                && inquireHandler.reauthenticate(requestTokens.get(execution));
+    }
+
+    /**
+     * @return the value of a completed future, throwing the exception it completed with.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * @return the earliest next poll time of the queries in flight that are not being polled, null if there are none.
+     */
+    private static Long earliestNextPollTime(Map<Execution, AbstractPoller> inFlight, Set<Execution> polling) {
+        Long earliest = null;
+        for (Map.Entry<Execution, AbstractPoller> entry : inFlight.entrySet()) {
+            if (polling.contains(entry.getKey())) {
+                continue;
+            }
+            final long nextPollTime = entry.getValue().getPollScheduler().getNextPollTime();
+            if (earliest == null || nextPollTime - earliest < 0) {
+                earliest = nextPollTime;
+            }
+        }
+        return earliest;
+    }
+
+    private static void closeQuietly(Iterable<Map<String, Object>> results) {
+        if (results instanceof Closeable) {
+            try {
+                ((Closeable) results).close();
+            } catch (IOException e) {
+                System.out.println("Could not delete the results of a failed query: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void printQueryError(String queryName, Exception ex) {
+        System.out.println("ERROR: An error has occurred while processing query " + queryName + ". Will continue processing the other queries, please run this one again.");
+        System.out.println(ex.getMessage());
+    }
+
+    /**
+     * One run of a query on Inquire, over one of its windows.
+     */
+    private static class Execution {
+
+        private final String queryName;
+        private final int window;
+        private final int windows;
+        // The parameters of the execution, those requested unless it was resumed with an earlier "to"
+        private Map<String, Object> params;
+        private final Map<String, Object> requestedParams;
+        private boolean retried = false;
+        // Polled again after an earlier run submitted it, see ExecutionJournal
+        private boolean attached = false;
+        // Holds a place of the ConcurrencyLimiter, and when its last submit or poll was sent
+        private boolean admitted = false;
+        private long requestSentAt;
+        // The key under which the other configs of the run wait for this execution, see ExecutionCoalescer#running
+        private String coalescedKey;
+        // Neither kept by another config nor cached, so it runs on Inquire
+        private boolean lookedUp = false;
+
+        private Execution(String queryName, int window, int windows, Map<String, Object> params) {
+            this.queryName = queryName;
+            this.window = window;
+            this.windows = windows;
+            this.params = params;
+            this.requestedParams = params;
+        }
+
+        private boolean isWindowed() {
+            return windows > 1;
+        }
+
+        @Override
+        public String toString() {
+            return isWindowed() ? queryName + " (window " + (window + 1) + "/" + windows + ")" : queryName;
+        }
+    }
+
+    /**
+     * What the executions of one query produced so far.
+     */
+    private static class QueryState {
+
+        private ResultConsumer consumer;
+        // Results of the finished windows by window, and how many of them were handed to the consumer
+        private final List<Iterable<Map<String, Object>>> windowResults;
+        private int handedOver = 0;
+        private boolean failed = false;
+        // Progress of the executions that ran on Inquire, summed over the windows
+        private long startedAt = 0;
+        private int pagesProcessed = 0;
+        private long seenResults = 0;
+        private double executionTime = 0;
+        private long resultBytes = 0;
+        private String timeEstimate;
+
+        private QueryState(int windows) {
+            this.windowResults = new ArrayList<>(Collections.nCopies(windows, null));
+        }
+
+        private void addProgress(AbstractPoller poller, Iterable<Map<String, Object>> results) {
+            if (results instanceof SpooledResult) {
+                resultBytes += ((SpooledResult) results).length();
+            }
+            pagesProcessed += poller.getPagesProcessed();
+            seenResults += poller.getSeenResults();
+            executionTime += poller.getMeanExecutionTime() * poller.getPagesProcessed();
+        }
+
+        /**
+         * @param params The parameters of the executions; all windows of a query share their esPageSize.
+         */
+        private QueryHistory.Entry toHistoryEntry(Map<String, Object> params) {
+            final QueryHistory.Entry entry = new QueryHistory.Entry();
+            final Object esPageSize = params.get("esPageSize");
+            try {
+                entry.esPageSize = esPageSize != null ? Integer.valueOf(esPageSize.toString()) : null;
+            } catch (NumberFormatException e) {
+                entry.esPageSize = null;
+            }
+            entry.pagesProcessed = pagesProcessed;
+            entry.seenResults = seenResults;
+            entry.meanExecutionTime = pagesProcessed > 0 ? executionTime / pagesProcessed : 0;
+            entry.finishedAt = System.currentTimeMillis();
+            entry.durationMillis = entry.finishedAt - startedAt;
+            entry.resultBytes = resultBytes;
+            entry.timeEstimate = timeEstimate;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package inquireetl;
+
+import inquireetl.inquirehandler.PollScheduler;
+import inquireetl.inquirehandler.TokenCache;
+import inquireetl.inquirehandler.TransportSettings;
+
+import java.util.function.Function;
+
+/**
+ * How the shared queries of a config run on Inquire, see {@link InquireData#get}: how they are split, limited and polled,
+ * and the caches and stores of the config they use. The fields left null are not used.
+ */
+public class QuerySettings {
+    // Splits the range of dateFrom and dateTo into windows run as separate executions: "day", "week" or a number of windows. Null to run each query over the whole range.
+    public String timeWindows;
+    // Maximum number of shared queries of an LDS running on Inquire at the same time
+    public int maxConcurrentQueries = 1;
+    // Ceiling in milliseconds for the delay between two polls of a running query
+    public long maxPollInterval = PollScheduler.DEFAULT_MAX_DELAY;
+    // The HTTP connector, connection pool and timeouts used to reach the Inquire Endpoint
+    public TransportSettings transportSettings = TransportSettings.DEFAULT;
+    // Cache of the access tokens of the user, null to log in and out for each LDS
+    public TokenCache tokenCache;
+    // Cache of the shared queries of each LDS, null to list them on Inquire
+    public SharedQueryCatalog catalog;
+    // Where the queries start from when dateFrom is not given, null to run them over the whole history. The end of the run is staged as new watermark of the successful queries.
+    public WatermarkStore watermarks;
+    // Results of earlier executions to use instead of running the same query with the same range again, null to always run the queries
+    public ResultCache resultCache;
+    // Where the runs of the queries are recorded and their esPageSize is tuned from, null not to record them
+    public QueryHistory queryHistory;
+    // Opens the journal of the executions of an LDS, to poll those an interrupted run left running instead of submitting them again. Null not to keep one.
+    public Function<String, ExecutionJournal> executionJournals;
+    // Results of the executions of other configs of the run to use instead of running the same executions again, null to always run them
+    public ExecutionCoalescer executionCoalescer;
+    // Adapts the number of queries in flight on the backend to how it responds, up to maxConcurrentQueries. Null for a fixed maxConcurrentQueries.
+    public ConcurrencyLimiter concurrencyLimiter;
+}
@@ -0,0 +1,242 @@
+package inquireetl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import inquireetl.inquirehandler.InquireRest;
+import inquireetl.inquirehandler.ResultCursor;
+import inquireetl.inquirehandler.SpooledResult;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The results of query executions kept gzip compressed in the results folder of the {@link CacheStore}, so running a query
+ * again with the same parameters does not execute it on Inquire again.
+ * Each entry is a .json.gz file with the rows and a .json file with its key, size, and when it was written and last used.
+ * Entries older than the TTL are not used; when the entries take more than the maximum size, the least recently used ones
+ * are deleted, except those still being read by a config of this process, which are counted until their results are closed.
+ */
+public class ResultCache {
+
+    private static final ObjectMapper mapper = InquireRest.getObjectMapper();
+
+    private final CacheStore cacheStore;
+    private final long maxSize;
+    private final long ttl;
+
+    // Cached results handed out and not closed yet by metadata file, over all configs and caches of the process
+    private static final Map<File, Integer> inUse = new HashMap<>();
+
+    /**
+     * @param cacheStore Where the results are kept.
+     * @param maxSize Bytes the compressed results may take before the least recently used ones are deleted.
+     * @param ttl Milliseconds results are used after they were written.
+     */
+    public ResultCache(CacheStore cacheStore, long maxSize, long ttl) {
+        this.cacheStore = cacheStore;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @param tqlHash Hash of the TQL of the query, see {@link SharedQueryCatalog}.
+     * @param params Query parameters of the execution; from, to and esPageSize are part of the key.
+     * @return the key of the results of the execution.
+     */
+    public static String key(String backendUrl, String ldsName, String queryName, String tqlHash, Map<String, Object> params) {
+        return String.join("\n", backendUrl, ldsName, queryName, String.valueOf(tqlHash),
+                String.valueOf(params.get("from")), String.valueOf(params.get("to")), String.valueOf(params.get("esPageSize")));
+    }
+
+    /**
+     * @return the cached results, read from the cache file every time they are iterated. Null if there are none or they expired.
+     * The results are not evicted until they are closed.
+     */
+    public Iterable<Map<String, Object>> get(String key) {
+        final File metadataFile = cacheStore.file("results", key).getAbsoluteFile();
+        // Taken before reading the entry, so no eviction deletes it in between
+        acquire(metadataFile);
+        final Entry entry = cacheStore.read(metadataFile, Entry.class);
+        final File rowsFile = rowsFile(metadataFile);
+        if (entry == null || !key.equals(entry.key) || !rowsFile.isFile()) {
+            release(metadataFile);
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        if (now - entry.writtenAt >= ttl) {
+            release(metadataFile);
+            deleteUnused(metadataFile);
+            return null;
+        }
+        entry.usedAt = now;
+        try {
+            cacheStore.write(metadataFile, entry);
+        } catch (IOException e) {
+            System.out.println("Could not update the cached results " + metadataFile.getPath() + ": " + e.getMessage());
+        }
+        return new CachedResult(metadataFile, rowsFile);
+    }
+
+    /**
+     * Caches the results, then deletes the least recently used results if the cache is over its maximum size.
+     * A failure to write is reported, the results are simply not cached.
+     */
+    public void put(String key, Iterable<Map<String, Object>> rows) {
+        final File metadataFile = cacheStore.file("results", key);
+        final File rowsFile = rowsFile(metadataFile);
+        Path temp = null;
+        try {
+            Files.createDirectories(rowsFile.toPath().getParent());
+            temp = Files.createTempFile(rowsFile.toPath().getParent(), rowsFile.getName(), ".tmp");
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                if (rows instanceof SpooledResult) {
+                    // The rows are copied as they were received instead of being parsed and serialized again
+                    out.write('[');
+                    ((SpooledResult) rows).transferRowsTo(Channels.newChannel(out));
+                    out.write(']');
+                } else {
+                    final JsonGenerator generator = mapper.getFactory().createGenerator(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    generator.writeStartArray();
+                    for (Map<String, Object> row : rows) {
+                        generator.writeObject(row);
+                    }
+                    generator.writeEndArray();
+                    generator.flush();
+                }
+            }
+            Files.move(temp, rowsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            final Entry entry = new Entry();
+            entry.key = key;
+            entry.size = rowsFile.length();
+            entry.writtenAt = System.currentTimeMillis();
+            entry.usedAt = entry.writtenAt;
+            cacheStore.write(metadataFile, entry);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Could not cache the results in " + rowsFile.getPath() + ": " + e.getMessage());
+            delete(metadataFile);
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the expired results, then the least recently used ones until the others fit in the maximum size.
+     */
+    private synchronized void evict() {
+        final File[] metadataFiles = new File(cacheStore.getDirectory(), "results").listFiles((dir, name) -> name.endsWith(".json"));
+        if (metadataFiles == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final List<Map.Entry<File, Entry>> entries = new ArrayList<>();
+        long size = 0;
+        for (File metadataFile : metadataFiles) {
+            final Entry entry = cacheStore.read(metadataFile.getAbsoluteFile(), Entry.class);
+            if (entry == null || now - entry.writtenAt >= ttl) {
+                deleteUnused(metadataFile.getAbsoluteFile());
+            } else {
+                entries.add(new AbstractMap.SimpleEntry<>(metadataFile.getAbsoluteFile(), entry));
+                size += entry.size;
+            }
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().usedAt));
+        for (Map.Entry<File, Entry> entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            // Results still being read may have to be written to the output files of a config
+            if (deleteUnused(entry.getKey())) {
+                size -= entry.getValue().size;
+            }
+        }
+    }
+
+    private static File rowsFile(File metadataFile) {
+        return new File(metadataFile.getParentFile(), metadataFile.getName() + ".gz");
+    }
+
+    private static void delete(File metadataFile) {
+        rowsFile(metadataFile).delete();
+        metadataFile.delete();
+    }
+
+    /**
+     * Deletes the entry unless results handed out from it are not closed yet.
+     * @return whether the entry was deleted.
+     */
+    private static boolean deleteUnused(File metadataFile) {
+        synchronized (inUse) {
+            if (inUse.containsKey(metadataFile)) {
+                return false;
+            }
+            delete(metadataFile);
+            return true;
+        }
+    }
+
+    private static void acquire(File metadataFile) {
+        synchronized (inUse) {
+            inUse.merge(metadataFile, 1, Integer::sum);
+        }
+    }
+
+    private static void release(File metadataFile) {
+        synchronized (inUse) {
+            inUse.computeIfPresent(metadataFile, (file, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Cached results, read from the cache file every time they are iterated, and kept from eviction until closed.
+     */
+    private static class CachedResult implements Iterable<Map<String, Object>>, Closeable {
+
+        private final File metadataFile;
+        private final File rowsFile;
+        private boolean closed = false;
+
+        private CachedResult(File metadataFile, File rowsFile) {
+            this.metadataFile = metadataFile;
+            this.rowsFile = rowsFile;
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> iterator() {
+            try {
+                final InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(rowsFile)));
+                return new ResultCursor(mapper.getFactory().createParser(in), mapper);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(metadataFile);
+            }
+        }
+    }
+
+    /**
+     * The metadata of one cached result.
+     */
+    public static class Entry {
+        public String key;
+        public long size;
+        public long writtenAt;
+        public long usedAt;
+    }
+}
@@ -0,0 +1,95 @@
+package inquireetl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * The shared queries published in an LDS, cached in the {@link CacheStore} with a hash of the TQL of each query.
+ * A cached list younger than the TTL is used instead of asking Inquire; every list fetched from Inquire is compared
+ * with the cached one to report the queries that were published, removed or changed since.
+ */
+public class SharedQueryCatalog {
+
+    private final CacheStore cacheStore;
+    private final long ttl;
+    private final boolean refresh;
+
+    /**
+     * @param cacheStore Where the catalogs are kept.
+     * @param ttl Milliseconds a cached catalog is used without asking Inquire, 0 to always ask.
+     * @param refresh Ask Inquire even if the cached catalog is younger than the TTL.
+     */
+    public SharedQueryCatalog(CacheStore cacheStore, long ttl, boolean refresh) {
+        this.cacheStore = cacheStore;
+        this.ttl = ttl;
+        this.refresh = refresh;
+    }
+
+    /**
+     * @param backendUrl The address of the Inquire Endpoint.
+     * @param ldsName The name of the Log Data Source.
+     * @param fetch Lists the shared queries of the LDS on Inquire, the TQL by published name.
+     * @return the TQL hash by published name of the shared queries, in the order Inquire listed them.
+     */
+    public synchronized LinkedHashMap<String, String> get(String backendUrl, String ldsName, Callable<Map<String, String>> fetch) throws Exception {
+        final File file = cacheStore.file("catalog", backendUrl, ldsName);
+        final Entry cached = cacheStore.read(file, Entry.class);
+        final long now = System.currentTimeMillis();
+        if (cached != null && cached.queries != null && !refresh && now - cached.fetchedAt < ttl) {
+            System.out.println("Using the shared queries of LDS " + ldsName + " cached at " + new Date(cached.fetchedAt));
+            return cached.queries;
+        }
+
+        final LinkedHashMap<String, String> queries = new LinkedHashMap<>();
+        for (Map.Entry<String, String> query : fetch.call().entrySet()) {
+            queries.put(query.getKey(), CacheStore.sha256(query.getValue() != null ? query.getValue() : ""));
+        }
+        if (cached != null && cached.queries != null) {
+            reportChanges(ldsName, cached.queries, queries);
+        }
+
+        final Entry entry = new Entry();
+        entry.backend = backendUrl;
+        entry.lds = ldsName;
+        entry.fetchedAt = now;
+        entry.queries = queries;
+        try {
+            cacheStore.write(file, entry);
+        } catch (IOException e) {
+            System.out.println("Could not cache the shared queries of LDS " + ldsName + ": " + e.getMessage());
+        }
+        return queries;
+    }
+
+    private static void reportChanges(String ldsName, Map<String, String> previous, Map<String, String> current) {
+        final List<String> added = new ArrayList<>();
+        final List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> query : current.entrySet()) {
+            final String previousHash = previous.get(query.getKey());
+            if (previousHash == null) {
+                added.add(query.getKey());
+            } else if (!previousHash.equals(query.getValue())) {
+                changed.add(query.getKey());
+            }
+        }
+        final List<String> removed = new ArrayList<>(previous.keySet());
+        removed.removeAll(current.keySet());
+
+        if (!added.isEmpty() || !changed.isEmpty() || !removed.isEmpty()) {
+            System.out.println("Shared queries of LDS " + ldsName + " since the last run: "
+                    + "published " + added + ", changed " + changed + ", removed " + removed);
+        }
+    }
+
+    /**
+     * The cached catalog of one LDS.
+     */
+    public static class Entry {
+        public String backend;
+        public String lds;
+        public long fetchedAt;
+        public LinkedHashMap<String, String> queries;
+    }
+}
@@ -0,0 +1,85 @@
+package inquireetl;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Splits the --from/--to range of a run into consecutive windows that are run as separate executions of each query.
+ * A split is "day" or "week" for windows ending at local midnight or at midnight between Sunday and Monday,
+ * or a number of windows of equal length.
+ * Windows do not overlap: each one ends 1 millisecond before the next one starts, and the last one ends at --to.
+ */
+public class TimeWindows {
+
+    private TimeWindows() {
+    }
+
+    /**
+     * @param split "day", "week" or the number of windows.
+     * @throws IllegalArgumentException split is none of these.
+     */
+    public static void validate(String split) {
+        if (split.equalsIgnoreCase("day") || split.equalsIgnoreCase("week")) {
+            return;
+        }
+        final int count;
+        try {
+            count = Integer.parseInt(split);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("timeWindows " + '"' + split + '"' + " is not 'day', 'week' or a valid number");
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("timeWindows must be at least 1.");
+        }
+    }
+
+    /**
+     * @param from  Start of the range in milliseconds since the epoch.
+     * @param to    End of the range in milliseconds since the epoch.
+     * @param split "day", "week" or the number of windows.
+     * @return start and end of each window, in time order. A single window if the range is too short to split.
+     */
+    public static List<long[]> split(long from, long to, String split) {
+        validate(split);
+        final List<long[]> windows = new ArrayList<>();
+        if (split.equalsIgnoreCase("day") || split.equalsIgnoreCase("week")) {
+            final Calendar boundary = Calendar.getInstance();
+            boundary.setTimeInMillis(from);
+            boundary.set(Calendar.HOUR_OF_DAY, 0);
+            boundary.set(Calendar.MINUTE, 0);
+            boundary.set(Calendar.SECOND, 0);
+            boundary.set(Calendar.MILLISECOND, 0);
+            if (split.equalsIgnoreCase("week")) {
+                while (boundary.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
+                    boundary.add(Calendar.DAY_OF_MONTH, -1);
+                }
+            }
+            long start = from;
+            while (true) {
+                boundary.add(Calendar.DAY_OF_MONTH, split.equalsIgnoreCase("week") ? 7 : 1);
+                if (boundary.getTimeInMillis() > to) {
+                    break;
+                }
+                windows.add(new long[]{start, boundary.getTimeInMillis() - 1});
+                start = boundary.getTimeInMillis();
+            }
+            if (start < to || windows.isEmpty()) {
+                windows.add(new long[]{start, to});
+            } else {
+                // A range ending right at midnight, as a --to date without time does, gets no window of its own for that instant
+                windows.get(windows.size() - 1)[1] = to;
+            }
+        } else {
+            final long count = Math.max(1, Math.min(Integer.parseInt(split), to - from + 1));
+            final long length = (to - from + 1) / count;
+            long start = from;
+            for (long i = 1; i < count; i++) {
+                windows.add(new long[]{start, start + length - 1});
+                start += length;
+            }
+            windows.add(new long[]{start, to});
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,78 @@
+package inquireetl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The upper bound of the last successful extraction of each query, by backend, LDS and query name, kept in the {@link CacheStore}.
+ * The next run of the query only asks Inquire for what came after it, going back by the overlap to pick up sessions
+ * that reached the LDS late. New watermarks are only recorded once the results of the run have been written.
+ */
+public class WatermarkStore {
+
+    private final CacheStore cacheStore;
+    private final long overlap;
+    private final List<Entry> staged = new ArrayList<>();
+
+    /**
+     * @param cacheStore Where the watermarks are kept.
+     * @param overlap Milliseconds before the watermark the next extraction starts from.
+     */
+    public WatermarkStore(CacheStore cacheStore, long overlap) {
+        this.cacheStore = cacheStore;
+        this.overlap = overlap;
+    }
+
+    /**
+     * @return where the next extraction of the query starts in milliseconds since the epoch, null if it never succeeded.
+     */
+    public Long getFrom(String backendUrl, String ldsName, String queryName) {
+        final Entry entry = cacheStore.read(cacheStore.file("watermark", backendUrl, ldsName, queryName), Entry.class);
+        return entry != null ? entry.watermark - overlap : null;
+    }
+
+    /**
+     * Keeps the watermark of a successful extraction of the query until {@link WatermarkStore#commit()}.
+     * @param watermark The "to" of the extraction in milliseconds since the epoch.
+     */
+    public synchronized void stage(String backendUrl, String ldsName, String queryName, long watermark) {
+        final Entry entry = new Entry();
+        entry.backend = backendUrl;
+        entry.lds = ldsName;
+        entry.query = queryName;
+        entry.watermark = watermark;
+        staged.add(entry);
+    }
+
+    /**
+     * Records the staged watermarks of the queries whose results have been written, and drops the others,
+     * so the next run of a query whose files could not be written starts from its previous watermark again.
+     * @param written Whether all output files of the query by that name were written.
+     */
+    public synchronized void commit(Predicate<String> written) {
+        for (Entry entry : staged) {
+            if (!written.test(entry.query)) {
+                System.out.println("The files of query " + entry.query + " were not written, its next run starts from its previous watermark");
+                continue;
+            }
+            try {
+                cacheStore.write(cacheStore.file("watermark", entry.backend, entry.lds, entry.query), entry);
+            } catch (IOException e) {
+                System.out.println("Could not record the watermark of query " + entry.query + ", its next run starts from the previous one: " + e.getMessage());
+            }
+        }
+        staged.clear();
+    }
+
+    /**
+     * The watermark of one query.
+     */
+    public static class Entry {
+        public String backend;
+        public String lds;
+        public String query;
+        public long watermark;
+    }
+}
@@ -1,12 +1,103 @@
 package inquireetl.inquirehandler;
 
+import javax.ws.rs.NotAuthorizedException;
 import java.net.URL;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class AbstractInquireHandler extends InquireRest {
 
+    protected long maxPollInterval = PollScheduler.DEFAULT_MAX_DELAY;
+
+    private final String backendUrl;
+    private String username;
+    private String password;
+    private TokenCache tokenCache;
+
     public AbstractInquireHandler(URL serverUrl, String accessToken) throws IllegalArgumentException {
         super(serverUrl, accessToken);
+        this.backendUrl = serverUrl.toString();
+    }
+
+    public AbstractInquireHandler(URL serverUrl, String accessToken, TransportSettings transportSettings) throws IllegalArgumentException {
+        super(serverUrl, accessToken, transportSettings);
+        this.backendUrl = serverUrl.toString();
+    }
+
+    /**
+     * Uses the cached access token of the user for this backend if there is one and logs in otherwise.
+     * The credentials are kept to log in again when Inquire rejects the token, see {@link AbstractInquireHandler#reauthenticate(String)}.
+     * @param tokenCache Cache to take the token from and to keep new tokens in, null to always log in.
+     */
+    public void authenticate(final String username, final String password, final TokenCache tokenCache) {
+        this.username = username;
+        this.password = password;
+        this.tokenCache = tokenCache;
+        final String cachedToken = tokenCache != null ? tokenCache.get(backendUrl, username) : null;
+        if (cachedToken != null) {
+            System.out.println("Using the cached access token of " + username + " for " + backendUrl);
+            authorizationFilter.setAccessToken(cachedToken);
+        } else {
+            loginAndCache();
+        }
+    }
+
+    /**
+     * Logs in again after Inquire rejected an access token, unless another request has done so already.
+     * @param rejectedToken The access token sent with the rejected request.
+     * @return false if there are no credentials to log in with, as when an API token is used.
+     */
+    public synchronized boolean reauthenticate(final String rejectedToken) {
+        if (username == null) {
+            return false;
+        }
+        if (tokenCache != null) {
+            tokenCache.invalidate(backendUrl, username, rejectedToken);
+        }
+        if (Objects.equals(rejectedToken, authorizationFilter.getAccessToken())) {
+            System.out.println("Access token of " + username + " rejected by " + backendUrl + ", logging in again");
+            loginAndCache();
+        }
+        return true;
+    }
+
+    /**
+     * Sends the request and, if Inquire rejects the access token, sends it once more after logging in again.
+     */
+    public <T> T withReauthentication(final Callable<T> request) throws Exception {
+        final String accessToken = getAccessToken();
+        try {
+            return request.call();
+        } catch (NotAuthorizedException e) {
+            if (!reauthenticate(accessToken)) {
+                throw e;
+            }
+            return request.call();
+        }
+    }
+
+    public String getBackendUrl() {
+        return backendUrl;
+    }
+
+    public String getAccessToken() {
+        return authorizationFilter.getAccessToken();
+    }
+
+    private void loginAndCache() {
+        final String accessToken = login(username, password);
+        if (tokenCache != null) {
+            tokenCache.put(backendUrl, username, accessToken);
+        }
+    }
+
+    /**
+     * @param maxPollInterval Ceiling in milliseconds for the delay between two polls of the queries submitted from now on.
+     */
+    public void setMaxPollInterval(long maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
     }
 
     public abstract String login(final String username, final String password);
@@ -15,4 +106,18 @@ public abstract class AbstractInquireHandler extends InquireRest {
 
     public abstract AbstractPoller submitSharedQuery(final String ldsName, final String identifier, final Map<String, Object> parameters) throws Exception;
 
+    /**
+     * Polls a query submitted earlier, e.g. by a run that was interrupted, instead of submitting it again.
+     * Nothing is sent until the poller is polled; polling fails if Inquire does not know the execution any more.
+     * @param executionId The id Inquire gave the execution, see {@link AbstractPoller#getExecutionId()}.
+     * @param parameters The parameters the query was submitted with.
+     */
+    public abstract AbstractPoller attachQuery(final String executionId, final Map<String, Object> parameters);
+
+    /**
+     * Submits the shared query without blocking the calling thread.
+     * @return a future completed with the poller of the query, or exceptionally if the submit failed.
+     */
+    public abstract CompletableFuture<AbstractPoller> submitSharedQueryAsync(final String ldsName, final String identifier, final Map<String, Object> parameters);
+
 }
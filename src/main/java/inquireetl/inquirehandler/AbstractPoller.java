@@ -3,18 +3,101 @@ package inquireetl.inquirehandler;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class AbstractPoller extends InquireRest {
 
     public Object timeout;
 
-    public AbstractPoller(WebTarget webTarget, AuthorizationFilter authorizationFilter) throws IllegalArgumentException {
+    protected final PollScheduler pollScheduler;
+
+    protected ResultAggregator resultAggregator;
+
+    private int pagesProcessed = 0;
+    private long seenResults = 0;
+    private double meanExecutionTime = 0;
+
+    public AbstractPoller(WebTarget webTarget, AuthorizationFilter authorizationFilter, PollScheduler pollScheduler) throws IllegalArgumentException {
         super(webTarget, authorizationFilter);
+        this.pollScheduler = pollScheduler;
+    }
+
+    public PollScheduler getPollScheduler() {
+        return pollScheduler;
+    }
+
+    /**
+     * Hands the rows of every partial update and of the final result to the consumer as they are polled, applying their aggregation method.
+     * @param resultConsumer Consumer for the results of this query, null to only keep the final result.
+     */
+    public void setResultConsumer(ResultConsumer resultConsumer) {
+        this.resultAggregator = resultConsumer != null ? new ResultAggregator(resultConsumer) : null;
+    }
+
+    /**
+     * Keeps the progress reported by the last partial update, see {@link AbstractPoller#getPagesProcessed()}.
+     */
+    protected void recordProgress(int pagesProcessed, long seenResults, double meanExecutionTime) {
+        this.pagesProcessed = pagesProcessed;
+        this.seenResults = seenResults;
+        this.meanExecutionTime = meanExecutionTime;
+    }
+
+    /**
+     * @return the pages processed by the query according to the last partial update, 0 if none reported progress.
+     */
+    public int getPagesProcessed() {
+        return pagesProcessed;
+    }
+
+    public long getSeenResults() {
+        return seenResults;
+    }
+
+    /**
+     * @return the mean execution time of a page on the server in milliseconds, according to the last partial update.
+     */
+    public double getMeanExecutionTime() {
+        return meanExecutionTime;
+    }
+
+    /**
+     * @return how long Inquire may hold a poll before answering when nothing changed, from the timeout parameter, in milliseconds; 0 if none is sent.
+     */
+    public long getLongPollMillis() {
+        if (timeout == null) {
+            return 0;
+        }
+        try {
+            return (long) (Double.parseDouble(timeout.toString()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     public abstract boolean poll() throws Exception;
 
+    /**
+     * Polls without blocking the calling thread. A poller must not be polled again before the returned future completed.
+     * @return a future completed with whether the query finished, or exceptionally if the poll failed.
+     */
+    public abstract CompletableFuture<Boolean> pollAsync();
+
     public abstract Iterable<Map<String, Object>> getResults();
 
+    /**
+     * Deletes the spooled rows of the last message received, for a query given up before its results were taken.
+     */
+    public void discardResults() {
+        if (getResults() instanceof SpooledResult) {
+            ((SpooledResult) getResults()).close();
+        }
+    }
+
+    /**
+     * @return the id Inquire gave the execution of the query when it was submitted.
+     */
+    public abstract String getExecutionId();
+
     public abstract AbstractQueryResultMessage parseResponse(Response pollResponse) throws Exception;
 }
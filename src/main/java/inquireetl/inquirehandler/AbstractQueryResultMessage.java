@@ -23,5 +23,9 @@ public abstract class AbstractQueryResultMessage extends AbstractQueryMessage {
         return result;
     }
 
+    public void setResult(Iterable<Map<String, Object>> result) {
+        this.result = result;
+    }
+
 }
 
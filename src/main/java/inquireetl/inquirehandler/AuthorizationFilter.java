@@ -25,7 +25,7 @@ public class AuthorizationFilter implements ClientRequestFilter {
 
     @Override
     public void filter(final ClientRequestContext clientRequestContext) {
-            clientRequestContext.getHeaders().add(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken);
+            clientRequestContext.getHeaders().add(HttpHeaders.AUTHORIZATION, "Bearer " + getAccessToken());
     }
 
 }
@@ -0,0 +1,88 @@
+package inquireetl.inquirehandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The rows of several results one after the other, e.g. the time windows of a query in window order.
+ * Closing it closes the results that are {@link Closeable}, such as a {@link SpooledResult}.
+ */
+public class ConcatenatedResult implements Iterable<Map<String, Object>>, Closeable {
+
+    private final List<Iterable<Map<String, Object>>> parts;
+
+    public ConcatenatedResult(List<Iterable<Map<String, Object>>> parts) {
+        this.parts = new ArrayList<>(parts);
+    }
+
+    public List<Iterable<Map<String, Object>>> getParts() {
+        return Collections.unmodifiableList(parts);
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        return new Concatenation(parts.iterator());
+    }
+
+    private static class Concatenation implements Iterator<Map<String, Object>>, Closeable {
+
+        private final Iterator<Iterable<Map<String, Object>>> remainingParts;
+        private Iterator<Map<String, Object>> current = Collections.emptyIterator();
+
+        private Concatenation(Iterator<Iterable<Map<String, Object>>> remainingParts) {
+            this.remainingParts = remainingParts;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && remainingParts.hasNext()) {
+                final Iterable<Map<String, Object>> part = remainingParts.next();
+                if (part != null) {
+                    current = part.iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Closes the iterator of the current part, the parts not started yet hold nothing open.
+         */
+        @Override
+        public void close() throws IOException {
+            if (current instanceof Closeable) {
+                ((Closeable) current).close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Iterable<Map<String, Object>> part : parts) {
+            if (part instanceof Closeable) {
+                try {
+                    ((Closeable) part).close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package inquireetl.inquirehandler;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.StreamReadConstraints;
-import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
-import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
-import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
-import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.NotAuthorizedException;
+import javax.ws.rs.ServerErrorException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
@@ -17,26 +27,67 @@ import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class InquireRest {
     protected final AuthorizationFilter authorizationFilter;
-    private static final Client client;
+    private static final Map<TransportSettings, Client> clients = new ConcurrentHashMap<>();
+    private static final ObjectMapper objectMapper;
     public final WebTarget webTarget;
 
     static {
-        // init object mapper
+        // init object mapper, with the Jackson annotations of the messages only: the JAXB introspector and the Joda
+        // module would load hundreds of classes on every start without any message using them
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
         sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-        ObjectMapper objectMapper = (new ObjectMapper()).configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).setSerializationInclusion(JsonInclude.Include.NON_NULL).setAnnotationIntrospector(AnnotationIntrospector.pair(new JaxbAnnotationIntrospector(), new JacksonAnnotationIntrospector())).setDateFormat(sdf);
+        objectMapper = (new ObjectMapper()).configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).setSerializationInclusion(JsonInclude.Include.NON_NULL).setDateFormat(sdf);
         objectMapper.getFactory().setStreamReadConstraints(StreamReadConstraints.builder().maxStringLength(Integer.MAX_VALUE).build());
-        objectMapper.registerModule(new JodaModule());
+    }
+
+    /**
+     * Returns the client for these transport settings, building it on first use. Handlers with equal settings share
+     * the client, so that their connections to the backend are kept alive and reused across logins, submits and polls.
+     */
+    private static Client getClient(final TransportSettings transportSettings) {
+        return clients.computeIfAbsent(transportSettings, InquireRest::buildClient);
+    }
+
+    private static Client buildClient(final TransportSettings transportSettings) {
+        final ClientConfig clientConfig = new ClientConfig();
+        clientConfig.property(ClientProperties.CONNECT_TIMEOUT, transportSettings.getConnectTimeout());
+        clientConfig.property(ClientProperties.READ_TIMEOUT, transportSettings.getReadTimeout());
+        // Threads running the async requests, and with them the long polls of the queries in flight
+        clientConfig.property(ClientProperties.ASYNC_THREADPOOL_SIZE, transportSettings.getAsyncThreads());
+
+        if (transportSettings.isApacheConnector()) {
+            final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(transportSettings.getIdleTimeout(), TimeUnit.SECONDS);
+            connectionManager.setMaxTotal(transportSettings.getMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(transportSettings.getMaxConnectionsPerRoute());
+            final SocketConfig.Builder socketConfig = SocketConfig.custom().setSoKeepAlive(true).setTcpNoDelay(true);
+            if (transportSettings.getSocketBufferSize() > 0) {
+                socketConfig.setSndBufSize(transportSettings.getSocketBufferSize()).setRcvBufSize(transportSettings.getSocketBufferSize());
+            }
+            connectionManager.setDefaultSocketConfig(socketConfig.build());
+            startIdleConnectionEviction(connectionManager, transportSettings.getIdleTimeout());
+
+            clientConfig.connectorProvider(new ApacheConnectorProvider());
+            clientConfig.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+        }
 
         // init client
-        client = ClientBuilder.newClient();
+        final Client client = ClientBuilder.newClient(clientConfig);
 
         final JacksonJsonProvider jsonProvider = new JacksonJsonProvider(objectMapper);
         client.register(jsonProvider);
@@ -48,17 +99,61 @@ public class InquireRest {
         client.property("jersey.config.client.jsonFeature", "Teneo");
         // Disable WARN about unavailable default providers
         client.property("jersey.config.disableDefaultProvider", "ALL");
-        client.register(MultiPartFeature.class);
+
+        if (transportSettings.isCompression()) {
+            // Sends Accept-Encoding and decodes the response stream before it reaches the JSON provider
+            client.register(EncodingFilter.class);
+            client.register(GZipEncoder.class);
+            client.register(DeflateEncoder.class);
+        }
+        // The decoders run at ENTITY_CODER priority, so these count the bytes on the wire and the decoded bytes
+        client.register(TransferStats.receivedCounter(), Priorities.ENTITY_CODER - 1);
+        client.register(TransferStats.decodedCounter(), Priorities.ENTITY_CODER + 1);
+        return client;
+    }
+
+    /**
+     * Closes all clients with their connection pools and async threads. Handlers created before can not be used any more.
+     */
+    public static void closeClients() {
+        for (Client client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    /**
+     * Closes the pooled connections that have been idle for longer than the idle timeout, so that connections
+     * the backend or a load balancer has already dropped are not handed out for the next request.
+     */
+    private static void startIdleConnectionEviction(final PoolingHttpClientConnectionManager connectionManager, final int idleTimeout) {
+        final Thread evictor = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(Math.max(1, idleTimeout / 2)));
+                    connectionManager.closeExpiredConnections();
+                    connectionManager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "inquire-idle-connection-evictor");
+        evictor.setDaemon(true);
+        evictor.start();
     }
 
     public InquireRest(final URL serverUrl, final String accessToken) throws IllegalArgumentException {
+        this(serverUrl, accessToken, TransportSettings.DEFAULT);
+    }
+
+    public InquireRest(final URL serverUrl, final String accessToken, final TransportSettings transportSettings) throws IllegalArgumentException {
 
         if (serverUrl == null) {
             throw new IllegalArgumentException("Server URL parameter cannot be null.");
         }
 
         // webTarget
-        webTarget = client.target(serverUrl.toString()).path("rest");
+        webTarget = getClient(transportSettings).target(serverUrl.toString()).path("rest");
 
         authorizationFilter = new AuthorizationFilter(accessToken);
         webTarget.register(authorizationFilter);
@@ -71,7 +166,7 @@ public class InquireRest {
     }
 
     protected <T> T doPost(WebTarget webTarget, Entity<?> entity, Class<T> returnType) {
-        return doPost(webTarget, entity, determineMediaType(returnType)).readEntity(returnType);
+        return checkAuthorized(doPost(webTarget, entity, determineMediaType(returnType))).readEntity(returnType);
     }
 
     protected Response doPost(WebTarget webTarget, Entity<?> entity, MediaType acceptedMediaType) {
@@ -84,7 +179,7 @@ public class InquireRest {
     }
 
     protected <T> T doGet(WebTarget webTarget, GenericType<T> returnType) {
-        return doGet(webTarget).readEntity(returnType);
+        return checkAuthorized(doGet(webTarget)).readEntity(returnType);
     }
 
     public Response doGet(WebTarget webTarget) {
@@ -96,6 +191,117 @@ public class InquireRest {
         return response;
     }
 
+    /**
+     * Sends the POST without blocking. The request runs on the bounded async thread pool of the client.
+     */
+    protected CompletableFuture<Response> doPostAsync(WebTarget webTarget, Entity<?> entity) {
+        return webTarget.request(MediaType.APPLICATION_JSON_TYPE).rx().post(entity).toCompletableFuture();
+    }
+
+    protected <T> CompletableFuture<T> doGetAsync(WebTarget webTarget, GenericType<T> returnType) {
+        return webTarget.request(MediaType.APPLICATION_JSON_TYPE).rx().get(returnType).toCompletableFuture();
+    }
+
+    /**
+     * Sends the GET without blocking. The request runs on the bounded async thread pool of the client.
+     */
+    public CompletableFuture<Response> doGetAsync(WebTarget webTarget) {
+        return webTarget.request(MediaType.APPLICATION_JSON_TYPE).rx().get().toCompletableFuture();
+    }
+
+    /**
+     * Reads the response once it arrived, on the thread that received it. Exceptions of the reader complete the returned future exceptionally.
+     */
+    protected static <T> CompletableFuture<T> readAsync(CompletableFuture<Response> response, ResponseReader<T> reader) {
+        return response.thenApply(r -> {
+            try {
+                return reader.read(r);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    protected interface ResponseReader<T> {
+        T read(Response response) throws Exception;
+    }
+
+    /**
+     * @return the response, unless Inquire rejected the credentials or the access token of the request.
+     * @throws NotAuthorizedException The response status is 401, the access token may have expired
+     */
+    protected static Response checkAuthorized(Response response) {
+        if (response.getStatus() == Response.Status.UNAUTHORIZED.getStatusCode()) {
+            response.close();
+            throw new NotAuthorizedException(response);
+        }
+        return response;
+    }
+
+    /**
+     * @return the response, unless Inquire failed to handle the request.
+     * @throws ServerErrorException The response status is 5xx, Inquire may be overloaded
+     */
+    protected static Response checkServerError(Response response) {
+        if (response.getStatus() >= 500) {
+            response.close();
+            throw new ServerErrorException(response);
+        }
+        return response;
+    }
+
+    public static ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Reads a query message without loading its results into memory. The response is spooled to a temporary file and
+     * only the fields around the result array are deserialized; the result is read from the file when it is iterated.
+     * @param response Response with a query message as JSON object.
+     * @param messageType The message type to deserialize the object to.
+     */
+    protected static <T> T readMessage(Response response, Class<T> messageType) throws IOException {
+        final File spool = File.createTempFile("inquire_result_", ".json");
+        try {
+            try (InputStream in = response.readEntity(InputStream.class)) {
+                Files.copy(in, spool.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            final ObjectNode envelope = objectMapper.createObjectNode();
+            long resultStart = -1;
+            long resultEnd = -1;
+            try (JsonParser parser = objectMapper.getFactory().createParser(spool)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a JSON object as query message at " + parser.getTokenLocation());
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && "result".equals(field)) {
+                        resultStart = parser.getTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        resultEnd = parser.getCurrentLocation().getByteOffset();
+                    } else {
+                        envelope.set(field, objectMapper.readTree(parser));
+                    }
+                }
+            }
+
+            final T message = objectMapper.treeToValue(envelope, messageType);
+            if (resultStart >= 0 && message instanceof AbstractQueryResultMessage) {
+                ((AbstractQueryResultMessage) message).setResult(new SpooledResult(spool, resultStart, resultEnd));
+            } else {
+                spool.delete();
+            }
+            return message;
+        } catch (IOException | RuntimeException e) {
+            spool.delete();
+            throw e;
+        }
+    }
+
     private static <T> MediaType determineMediaType(Class<T> returnType) {
         return InputStream.class.isAssignableFrom(returnType) || byte[].class.equals(returnType)
                 ? MediaType.APPLICATION_OCTET_STREAM_TYPE
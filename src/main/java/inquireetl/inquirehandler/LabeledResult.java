@@ -0,0 +1,123 @@
+package inquireetl.inquirehandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows of a result with a column added in front, holding the same value in every row, e.g. the LDS the rows come from.
+ * The rows are {@link ResultRow}s over the schema of the result with the column prepended. If the result already has
+ * a column by that name, the added column replaces it, so the label can be relied on; a warning is printed once.
+ * Closing it, or an iterator of it, closes the result or its iterator if it is {@link Closeable}.
+ */
+public class LabeledResult implements Iterable<Map<String, Object>>, Closeable {
+
+    private final Iterable<Map<String, Object>> rows;
+    private final String column;
+    private final Object value;
+    private boolean warned = false;
+
+    public LabeledResult(Iterable<Map<String, Object>> rows, String column, Object value) {
+        this.rows = rows;
+        this.column = column;
+        this.value = value;
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        return new Labeler(rows.iterator());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rows instanceof Closeable) {
+            ((Closeable) rows).close();
+        }
+    }
+
+    private synchronized void warnReplaced() {
+        if (!warned) {
+            warned = true;
+            System.out.println("WARNING: The results already have a column " + column + ", it is replaced by the added column holding " + value);
+        }
+    }
+
+    private class Labeler implements Iterator<Map<String, Object>>, Closeable {
+
+        private final Iterator<Map<String, Object>> delegate;
+        // The rows of a result share their schema, so the labeled schema is only made again when it changes
+        private ResultSchema schema;
+        private ResultSchema labeledSchema;
+        // Position in the labeled row of each column of the schema, -1 for a column replaced by the label
+        private int[] positions;
+
+        private Labeler(Iterator<Map<String, Object>> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            final Map<String, Object> row = delegate.next();
+            final Object[] values;
+            if (row instanceof ResultRow) {
+                final ResultRow resultRow = (ResultRow) row;
+                label(resultRow.getSchema());
+                values = new Object[labeledSchema.size()];
+                for (int i = 0; i < positions.length; i++) {
+                    if (positions[i] >= 0) {
+                        values[positions[i]] = resultRow.hasValue(i) ? resultRow.getValue(i) : ResultRow.ABSENT;
+                    }
+                }
+            } else {
+                // Rows that were not read from JSON have a schema of their own
+                label(ResultSchema.of(new ArrayList<>(row.keySet())));
+                values = new Object[labeledSchema.size()];
+                int i = 0;
+                for (Object rowValue : row.values()) {
+                    if (positions[i] >= 0) {
+                        values[positions[i]] = rowValue;
+                    }
+                    i++;
+                }
+            }
+            values[0] = value;
+            return new ResultRow(labeledSchema, values);
+        }
+
+        private void label(ResultSchema rowSchema) {
+            if (rowSchema == schema) {
+                return;
+            }
+            final List<String> columns = new ArrayList<>(rowSchema.size() + 1);
+            columns.add(column);
+            positions = new int[rowSchema.size()];
+            for (int i = 0; i < rowSchema.size(); i++) {
+                if (rowSchema.getColumn(i).equals(column)) {
+                    positions[i] = -1;
+                    warnReplaced();
+                } else {
+                    positions[i] = columns.size();
+                    columns.add(rowSchema.getColumn(i));
+                }
+            }
+            schema = rowSchema;
+            labeledSchema = ResultSchema.of(columns);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Results streamed from a spooled response hold the file open until they are read to the end
+            if (delegate instanceof Closeable) {
+                ((Closeable) delegate).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package inquireetl.inquirehandler;
+
+/**
+ * Decides when a running query should be polled next, so that the pollers do not call the poll endpoint back to back.
+ * The first delay comes from the time estimate of the start message. Afterwards, a poll that brings new pages waits
+ * about the mean execution time of a page, and a poll without progress doubles the delay up to {@link PollScheduler#maxDelay}.
+ * Delays are in milliseconds.
+ */
+public class PollScheduler {
+
+    public static final long DEFAULT_MAX_DELAY = 10000;
+
+    private static final long MIN_DELAY = 50;
+    private static final long FAST_DELAY = 200;
+    private static final long SLOW_DELAY = 1000;
+
+    private final long maxDelay;
+    private long delay = MIN_DELAY;
+    private int lastPagesProcessed = -1;
+    private long nextPollTime = System.nanoTime();
+    private String timeEstimate;
+
+    /**
+     * @param maxDelay Ceiling for the delay between two polls, in milliseconds.
+     */
+    public PollScheduler(long maxDelay) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("The maximum poll delay cannot be negative.");
+        }
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Schedules the first poll after a query has been submitted.
+     * @param timeEstimate Name of the time estimate of the start message: immediate, fast or slow. Null if unknown.
+     */
+    public synchronized void onStart(String timeEstimate) {
+        this.timeEstimate = timeEstimate;
+        if ("immediate".equals(timeEstimate)) {
+            delay = 0;
+        } else if ("fast".equals(timeEstimate)) {
+            delay = FAST_DELAY;
+        } else if ("slow".equals(timeEstimate)) {
+            delay = SLOW_DELAY;
+        } else {
+            delay = MIN_DELAY;
+        }
+        schedule();
+    }
+
+    /**
+     * @return the time estimate of the start message, null if unknown.
+     */
+    public synchronized String getTimeEstimate() {
+        return timeEstimate;
+    }
+
+    /**
+     * Schedules the next poll after a partial update with progress information was received.
+     * @param meanExecutionTime Mean execution time of a page on the server, in milliseconds.
+     * @param pagesProcessed    Pages processed so far.
+     * @param estimatedPages    Estimated total of pages, 0 or less if unknown.
+     */
+    public synchronized void onProgress(double meanExecutionTime, int pagesProcessed, int estimatedPages) {
+        if (pagesProcessed <= lastPagesProcessed) {
+            onNoProgress();
+            return;
+        }
+        lastPagesProcessed = pagesProcessed;
+        // The next page should be ready in about one mean page execution time, the final result right after the last page.
+        // A mean under MIN_DELAY, e.g. 0 before the server measured any page, must not make the poller spin.
+        delay = estimatedPages > 0 && pagesProcessed >= estimatedPages ? MIN_DELAY : Math.max(MIN_DELAY, (long) meanExecutionTime);
+        schedule();
+    }
+
+    /**
+     * Backs off exponentially after a poll that did not bring anything new.
+     */
+    public synchronized void onNoProgress() {
+        delay = Math.max(MIN_DELAY, delay * 2);
+        schedule();
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the query should be polled next.
+     */
+    public synchronized long getNextPollTime() {
+        return nextPollTime;
+    }
+
+    public synchronized boolean isDue(long nanoTime) {
+        return nanoTime - nextPollTime >= 0;
+    }
+
+    private void schedule() {
+        delay = Math.max(0, Math.min(delay, maxDelay));
+        nextPollTime = System.nanoTime() + delay * 1_000_000;
+    }
+}
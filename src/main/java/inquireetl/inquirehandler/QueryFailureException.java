@@ -0,0 +1,13 @@
+package inquireetl.inquirehandler;
+
+/**
+ * Inquire answered a submit or poll with a FailureMessage: the query failed on the server.
+ */
+public class QueryFailureException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueryFailureException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,186 @@
+package inquireetl.inquirehandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Applies the aggregation method of each partial update to a {@link ResultConsumer}:
+ * APPEND batches are handed over as they are, REPLACE batches replace everything received so far,
+ * and UPSERT batches are merged by key and handed over as a replacement sorted by the order keys.
+ * The final result is the complete result of the query, so after APPEND batches only its rows not yet appended are handed over.
+ */
+public class ResultAggregator {
+
+    private final ResultConsumer consumer;
+    private long appendedRows = 0;
+    private boolean appendedOnly = true;
+    private LinkedHashMap<List<Object>, Map<String, Object>> upserted;
+    private boolean complete = false;
+
+    public ResultAggregator(ResultConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * @param method    Name of the aggregation method: APPEND, REPLACE or UPSERT. Null is handled as APPEND.
+     * @param keys      Columns identifying a row for UPSERT.
+     * @param orderKeys Columns to sort UPSERT results by, mapped to true when ascending.
+     * @param rows      The rows of the partial update.
+     */
+    public void onPartial(String method, Iterable<String> keys, LinkedHashMap<String, Boolean> orderKeys, Iterable<Map<String, Object>> rows) throws IOException {
+        if (complete || rows == null) {
+            return;
+        }
+        if ("REPLACE".equals(method)) {
+            appendedOnly = false;
+            consumer.replace(rows);
+        } else if ("UPSERT".equals(method)) {
+            appendedOnly = false;
+            consumer.replace(upsert(keys, orderKeys, rows));
+        } else {
+            final CountedRows counted = new CountedRows(rows, 0);
+            consumer.append(counted);
+            appendedRows += counted.count();
+        }
+    }
+
+    /**
+     * Hands over the final result. Calling it more than once has no further effect.
+     */
+    public void onFinal(Iterable<Map<String, Object>> rows) throws IOException {
+        if (complete) {
+            return;
+        }
+        complete = true;
+        upserted = null;
+        if (!appendedOnly) {
+            consumer.replace(rows != null ? rows : List.of());
+            return;
+        }
+        final CountedRows remaining = new CountedRows(rows != null ? rows : List.of(), appendedRows);
+        consumer.append(remaining);
+        if (remaining.count() < appendedRows) {
+            // The final result does not continue what was appended, so it replaces it as a whole
+            consumer.replace(rows != null ? rows : List.of());
+        }
+    }
+
+    private Collection<Map<String, Object>> upsert(Iterable<String> keys, LinkedHashMap<String, Boolean> orderKeys, Iterable<Map<String, Object>> rows) {
+        if (upserted == null) {
+            upserted = new LinkedHashMap<>();
+        }
+        for (Map<String, Object> row : rows) {
+            final List<Object> key = new ArrayList<>();
+            if (keys != null) {
+                for (String column : keys) {
+                    key.add(row.get(column));
+                }
+            }
+            upserted.put(key, row);
+        }
+        if (orderKeys == null || orderKeys.isEmpty()) {
+            return upserted.values();
+        }
+        final List<Map<String, Object>> sorted = new ArrayList<>(upserted.values());
+        sorted.sort((a, b) -> {
+            for (Map.Entry<String, Boolean> orderKey : orderKeys.entrySet()) {
+                final int comparison = compareValues(a.get(orderKey.getKey()), b.get(orderKey.getKey()));
+                if (comparison != 0) {
+                    return orderKey.getValue() ? comparison : -comparison;
+                }
+            }
+            return 0;
+        });
+        return sorted;
+    }
+
+    /**
+     * The rows of a result after its first skipped ones. The rows are counted while the consumer iterates them,
+     * so a spooled result is not read once more only to count it.
+     */
+    private static class CountedRows implements Iterable<Map<String, Object>> {
+
+        private final Iterable<Map<String, Object>> rows;
+        private final long skipped;
+        // Rows of the result including the skipped ones, -1 until an iteration went through all of them
+        private long count = -1;
+
+        private CountedRows(Iterable<Map<String, Object>> rows, long skipped) {
+            this.rows = rows;
+            this.skipped = skipped;
+        }
+
+        /**
+         * @return the rows of the result including the skipped ones. They are only read here if the consumer did not read them to the end.
+         */
+        private long count() {
+            if (count < 0) {
+                final Iterator<Map<String, Object>> iterator = iterator();
+                while (iterator.hasNext()) {
+                    iterator.next();
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> iterator() {
+            return new Cursor(rows.iterator());
+        }
+
+        private class Cursor implements Iterator<Map<String, Object>>, Closeable {
+
+            private final Iterator<Map<String, Object>> delegate;
+            private long position = 0;
+
+            private Cursor(Iterator<Map<String, Object>> delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (position < skipped && delegate.hasNext()) {
+                    delegate.next();
+                    position++;
+                }
+                if (delegate.hasNext()) {
+                    return true;
+                }
+                count = position;
+                return false;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                position++;
+                return delegate.next();
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Results streamed from a spooled response hold the file open until they are read to the end
+                if (delegate instanceof Closeable) {
+                    ((Closeable) delegate).close();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass().equals(b.getClass())) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+}
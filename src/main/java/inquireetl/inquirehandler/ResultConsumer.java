@@ -0,0 +1,27 @@
+package inquireetl.inquirehandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Receives the results of a query while it is still running, see {@link AbstractPoller#setResultConsumer(ResultConsumer)}.
+ * The rows handed over so far, after applying every call in order, are the result of the query at that point.
+ */
+public interface ResultConsumer extends Closeable {
+
+    /**
+     * Adds rows after the ones received so far.
+     */
+    void append(Iterable<Map<String, Object>> rows) throws IOException;
+
+    /**
+     * Discards the rows received so far and replaces them with these.
+     */
+    void replace(Iterable<Map<String, Object>> rows) throws IOException;
+
+    /**
+     * Called once the query failed. Anything produced from the rows received so far should be dropped.
+     */
+    void abort();
+}
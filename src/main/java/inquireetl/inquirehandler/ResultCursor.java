@@ -0,0 +1,138 @@
+package inquireetl.inquirehandler;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the rows of a JSON array of objects one at a time, so that only the current row is held in memory.
+ * Rows are returned as {@link ResultRow}s sharing the schema of the result.
+ * The cursor closes itself after the last row; it should be closed explicitly when it is abandoned before that.
+ */
+public class ResultCursor implements Iterator<Map<String, Object>>, Closeable {
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private ResultSchema schema = ResultSchema.EMPTY;
+    private Object[] scratch = new Object[0];
+    private Map<String, Object> next;
+    private boolean closed = false;
+
+    /**
+     * @param parser       Parser positioned right before the start of the array.
+     * @param objectMapper Mapper used to read each row.
+     * @throws IOException The parser is not at the start of an array
+     */
+    public ResultCursor(JsonParser parser, ObjectMapper objectMapper) throws IOException {
+        this.parser = parser;
+        this.objectMapper = objectMapper;
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of results at " + parser.getTokenLocation());
+            }
+            advance();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a cursor over a file containing a JSON array of objects, such as the .json reports written by {@link inquireetl.LocalFile}.
+     */
+    public static ResultCursor open(File file) throws IOException {
+        return new ResultCursor(InquireRest.getObjectMapper().getFactory().createParser(file), InquireRest.getObjectMapper());
+    }
+
+    private void advance() throws IOException {
+        final JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            next = readRow();
+        } else if (token == JsonToken.END_ARRAY) {
+            next = null;
+            close();
+        } else {
+            throw new IOException("Expected a JSON object as result row at " + parser.getTokenLocation());
+        }
+    }
+
+    private ResultRow readRow() throws IOException {
+        Arrays.fill(scratch, ResultRow.ABSENT);
+        int position = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String column = parser.getCurrentName();
+            // Rows usually list their columns in the same order, so the next column is checked before looking it up
+            int index = position < schema.size() && column.equals(schema.getColumn(position)) ? position : schema.indexOf(column);
+            if (index < 0) {
+                schema = schema.withColumn(column);
+                index = schema.size() - 1;
+                scratch = Arrays.copyOf(scratch, schema.size());
+                scratch[index] = ResultRow.ABSENT;
+            }
+            parser.nextToken();
+            scratch[index] = readValue();
+            position = index + 1;
+        }
+        return new ResultRow(schema, Arrays.copyOf(scratch, schema.size()));
+    }
+
+    private Object readValue() throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                // Nested objects and arrays are read the same way the object mapper reads untyped values
+                return objectMapper.readValue(parser, Object.class);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        final Map<String, Object> row = next;
+        try {
+            advance();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+        return row;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        next = null;
+        try {
+            parser.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package inquireetl.inquirehandler;
+
+import java.util.*;
+
+/**
+ * A read-only result row: one value per column of a shared {@link ResultSchema}, in a flat array.
+ * It is a map from column name to value in schema order, so it can be used wherever results are handled as maps,
+ * while writers can read the values by position. A column the row did not have is absent from the map, unlike a null value.
+ */
+public final class ResultRow extends AbstractMap<String, Object> {
+
+    static final Object ABSENT = new Object();
+
+    private final ResultSchema schema;
+    private final Object[] values;
+
+    /**
+     * @param schema The columns of the row.
+     * @param values One value per column of the schema, {@link ResultRow#ABSENT} for the columns the row does not have.
+     */
+    ResultRow(ResultSchema schema, Object[] values) {
+        if (values.length != schema.size()) {
+            throw new IllegalArgumentException("Expected " + schema.size() + " values, received " + values.length);
+        }
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public ResultSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return whether the row has a value, possibly null, for the column at this position.
+     */
+    public boolean hasValue(int index) {
+        return values[index] != ABSENT;
+    }
+
+    /**
+     * @return the value of the column at this position, null if it is null or absent.
+     */
+    public Object getValue(int index) {
+        final Object value = values[index];
+        return value != ABSENT ? value : null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        final int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        return index >= 0 ? getValue(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        final int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        return index >= 0 && hasValue(index);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int index = nextPresent(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (index >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<>(schema.getColumn(index), values[index]);
+                        index = nextPresent(index + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Object value : values) {
+                    if (value != ABSENT) size++;
+                }
+                return size;
+            }
+        };
+    }
+
+    private int nextPresent(int from) {
+        int index = from;
+        while (index < values.length && values[index] == ABSENT) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,59 @@
+package inquireetl.inquirehandler;
+
+import java.util.*;
+
+/**
+ * The column names of a query result, shared by all its {@link ResultRow}s. A schema never changes;
+ * a column that shows up later in the result produces a new schema with the column added at the end.
+ */
+public final class ResultSchema {
+
+    public static final ResultSchema EMPTY = new ResultSchema(new String[0]);
+
+    private final String[] columns;
+    private final Map<String, Integer> indexes;
+
+    private ResultSchema(String[] columns) {
+        this.columns = columns;
+        this.indexes = new HashMap<>(columns.length * 2);
+        for (int i = 0; i < columns.length; i++) {
+            indexes.put(columns[i], i);
+        }
+    }
+
+    /**
+     * @return a schema with the given columns, in that order.
+     */
+    static ResultSchema of(List<String> columns) {
+        return new ResultSchema(columns.toArray(new String[0]));
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    public String getColumn(int index) {
+        return columns[index];
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    /**
+     * @return the position of the column, or -1 if the schema does not have it.
+     */
+    public int indexOf(String column) {
+        final Integer index = indexes.get(column);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return a schema with the same columns and the given one added at the end.
+     */
+    public ResultSchema withColumn(String column) {
+        final String[] extended = Arrays.copyOf(columns, columns.length + 1);
+        extended[columns.length] = column;
+        return new ResultSchema(extended);
+    }
+}
@@ -0,0 +1,106 @@
+package inquireetl.inquirehandler;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The result rows of a poll response, kept in the temporary file the response was spooled to instead of in memory.
+ * Every iteration opens a new {@link ResultCursor} over the file. Closing the result deletes the file, once every
+ * {@link SpooledResult#retain()} has been matched by a close.
+ */
+public class SpooledResult implements Iterable<Map<String, Object>>, Closeable {
+
+    private final File file;
+    private final long start;
+    private final long end;
+    private int references = 1;
+
+    /**
+     * @param file  The spooled response.
+     * @param start Byte offset where the JSON array of results starts.
+     * @param end   Byte offset right after the end of the array.
+     */
+    public SpooledResult(File file, long start, long end) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        try {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ).position(start);
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            return new ResultCursor(InquireRest.getObjectMapper().getFactory().createParser(in), InquireRest.getObjectMapper());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the rows of the result as they were received, without the brackets of the array, so they can be spliced into
+     * another JSON array without being parsed. The bytes are transferred from file to file by the operating system where possible.
+     * @param target Channel to write the rows to, at its current position.
+     * @return whether the result has any rows; nothing is written when it has none.
+     */
+    public boolean transferRowsTo(WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The array starts with '[' and ends with ']', the rows are in between unless only whitespace is
+            long from = start + 1;
+            final long to = end - 1;
+            final ByteBuffer buffer = ByteBuffer.allocate(256);
+            boolean empty = true;
+            while (empty && from < to) {
+                buffer.clear();
+                final int read = channel.read(buffer, from);
+                if (read < 0) {
+                    throw new EOFException("Spooled result " + file.getPath() + " ends before its array");
+                }
+                int i = 0;
+                while (i < read && from + i < to && Character.isWhitespace(buffer.get(i))) {
+                    i++;
+                }
+                from += i;
+                empty = i == read;
+            }
+            if (from >= to) {
+                return false;
+            }
+            while (from < to) {
+                from += channel.transferTo(from, to - from, target);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Keeps the file for one more user of the result, who closes it when done.
+     */
+    public synchronized SpooledResult retain() {
+        references++;
+        return this;
+    }
+
+    /**
+     * @return the size in bytes of the JSON array of results.
+     */
+    public long length() {
+        return end - start;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (--references > 0) {
+            return;
+        }
+        if (!file.delete() && file.exists()) {
+            System.out.println("Could not delete temporary result file " + file.getPath());
+        }
+    }
+}
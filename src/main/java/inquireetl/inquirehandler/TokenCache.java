@@ -0,0 +1,159 @@
+package inquireetl.inquirehandler;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access tokens by backend URL and user, so that configs using the same Inquire user log in once instead of once per config.
+ * Tokens are shared in memory by all the caches of a run and, when a file is given, also kept in that file for the next runs,
+ * readable by the owner only. A token is used until it expires or Inquire rejects it.
+ */
+public class TokenCache {
+
+    private static final Map<String, CachedToken> memory = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final long ttl;
+
+    /**
+     * @param file File keeping the tokens between runs, null to only share them within the run.
+     * @param ttl  Milliseconds a token is used after logging in.
+     */
+    public TokenCache(File file, long ttl) {
+        this.file = file;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return a token of the user that has not expired, null if there is none.
+     */
+    public String get(String backendUrl, String username) {
+        final String key = key(backendUrl, username);
+        CachedToken cached = memory.get(key);
+        if ((cached == null || cached.isExpired()) && file != null) {
+            synchronized (TokenCache.class) {
+                cached = CachedToken.parse(load().getProperty(key));
+            }
+            if (cached != null && !cached.isExpired()) {
+                memory.put(key, cached);
+            }
+        }
+        return cached != null && !cached.isExpired() ? cached.token : null;
+    }
+
+    /**
+     * Keeps the token of a login of the user.
+     */
+    public void put(String backendUrl, String username, String token) {
+        final String key = key(backendUrl, username);
+        final CachedToken cached = new CachedToken(token, System.currentTimeMillis() + ttl);
+        memory.put(key, cached);
+        if (file != null) {
+            synchronized (TokenCache.class) {
+                final Properties tokens = load();
+                tokens.setProperty(key, cached.toString());
+                store(tokens);
+            }
+        }
+    }
+
+    /**
+     * Forgets the token Inquire rejected, unless it has been replaced already.
+     */
+    public void invalidate(String backendUrl, String username, String token) {
+        final String key = key(backendUrl, username);
+        memory.computeIfPresent(key, (k, cached) -> cached.token.equals(token) ? null : cached);
+        if (file != null) {
+            synchronized (TokenCache.class) {
+                final Properties tokens = load();
+                final CachedToken stored = CachedToken.parse(tokens.getProperty(key));
+                if (stored != null && stored.token.equals(token)) {
+                    tokens.remove(key);
+                    store(tokens);
+                }
+            }
+        }
+    }
+
+    private static String key(String backendUrl, String username) {
+        final String url = backendUrl.endsWith("/") ? backendUrl.substring(0, backendUrl.length() - 1) : backendUrl;
+        return url + "|" + username;
+    }
+
+    private Properties load() {
+        final Properties tokens = new Properties();
+        if (file.isFile()) {
+            try (InputStream input = new FileInputStream(file)) {
+                tokens.load(input);
+            } catch (IOException e) {
+                System.out.println("Could not read the token cache " + file.getPath() + ": " + e.getMessage());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Replaces the file at once, so that a run reading it at the same time sees either the old or the new tokens.
+     */
+    private void store(Properties tokens) {
+        final Path target = file.toPath().toAbsolutePath();
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            try {
+                final Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+                temp = Files.createTempFile(target.getParent(), ".tokens", ".tmp", PosixFilePermissions.asFileAttribute(ownerOnly));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system, the file gets the default permissions of its folder
+                temp = Files.createTempFile(target.getParent(), ".tokens", ".tmp");
+            }
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                tokens.store(output, "Inquire access tokens, do not share");
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not write the token cache " + file.getPath() + ": " + e.getMessage());
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+
+    private static class CachedToken {
+
+        private final String token;
+        private final long expiresAt;
+
+        private CachedToken(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        private static CachedToken parse(String value) {
+            final int space = value != null ? value.indexOf(' ') : -1;
+            if (space < 0) {
+                return null;
+            }
+            try {
+                return new CachedToken(value.substring(space + 1), Long.parseLong(value.substring(0, space)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return expiresAt + " " + token;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package inquireetl.inquirehandler;
+
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of the responses read from Inquire, both as received on the wire and after their content encoding
+ * has been decoded. The two differ only when the backend compresses its responses.
+ */
+public class TransferStats {
+
+    private static final AtomicLong receivedBytes = new AtomicLong();
+    private static final AtomicLong decodedBytes = new AtomicLong();
+
+    /**
+     * @return the number of response bytes received so far, compressed if the backend compressed them.
+     */
+    public static long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * @return the number of response bytes read so far after decompression.
+     */
+    public static long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * @return an interceptor counting into the received bytes, to be registered before the content decoders.
+     */
+    static ReaderInterceptor receivedCounter() {
+        return new ReceivedCounter();
+    }
+
+    /**
+     * @return an interceptor counting into the decoded bytes, to be registered after the content decoders.
+     */
+    static ReaderInterceptor decodedCounter() {
+        return new DecodedCounter();
+    }
+
+    // Jersey registers a component class only once, so each counter needs a class of its own
+    private static class ReceivedCounter extends CountingInterceptor {
+        private ReceivedCounter() {
+            super(receivedBytes);
+        }
+    }
+
+    private static class DecodedCounter extends CountingInterceptor {
+        private DecodedCounter() {
+            super(decodedBytes);
+        }
+    }
+
+    private abstract static class CountingInterceptor implements ReaderInterceptor {
+
+        private final AtomicLong counter;
+
+        CountingInterceptor(AtomicLong counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+            context.setInputStream(new CountingInputStream(context.getInputStream(), counter));
+            return context.proceed();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong counter;
+
+        private CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            counter.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
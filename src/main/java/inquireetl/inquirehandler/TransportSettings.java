@@ -0,0 +1,132 @@
+package inquireetl.inquirehandler;
+
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * HTTP transport used to talk to Inquire: the Jersey connector, its connection pool and its timeouts.
+ * Handlers created with equal settings share one client and therefore one connection pool.
+ */
+public class TransportSettings {
+
+    public static final TransportSettings DEFAULT = new TransportSettings("default", 20, 10, 60, 0, 0, 0, true, 10);
+
+    private final String connector;
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final int idleTimeout;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int socketBufferSize;
+    private final boolean compression;
+    private final int asyncThreads;
+
+    /**
+     * @param connector              "default" for the JDK HttpURLConnection connector or "apache" for a pooled Apache HttpClient connector.
+     * @param maxConnections         Maximum number of pooled connections in total. Apache connector only.
+     * @param maxConnectionsPerRoute Maximum number of pooled connections per backend. Apache connector only.
+     * @param idleTimeout            Seconds after which idle pooled connections are closed. Apache connector only.
+     * @param connectTimeout         Connect timeout in milliseconds, 0 for none.
+     * @param readTimeout            Read timeout in milliseconds, 0 for none.
+     * @param socketBufferSize       Socket send and receive buffer size in bytes, 0 for the system default. Apache connector only.
+     * @param compression            Whether to accept gzip and deflate compressed responses.
+     * @param asyncThreads           Number of threads running the asynchronous requests.
+     */
+    public TransportSettings(String connector, int maxConnections, int maxConnectionsPerRoute, int idleTimeout, int connectTimeout, int readTimeout, int socketBufferSize, boolean compression, int asyncThreads) {
+        if (!"default".equals(connector) && !"apache".equals(connector)) {
+            throw new IllegalArgumentException("httpConnector " + '"' + connector + '"' + " is not supported, use default or apache");
+        }
+        this.connector = connector;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.idleTimeout = idleTimeout;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.socketBufferSize = socketBufferSize;
+        this.compression = compression;
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * Reads the http* entries of a configuration file, falling back to {@link TransportSettings#DEFAULT} for the missing ones.
+     */
+    public static TransportSettings fromProperties(Properties prop) {
+        return new TransportSettings(
+                prop.getProperty("httpConnector", DEFAULT.connector).trim().toLowerCase(),
+                intProperty(prop, "httpMaxConnections", DEFAULT.maxConnections, 1),
+                intProperty(prop, "httpMaxConnectionsPerRoute", DEFAULT.maxConnectionsPerRoute, 1),
+                intProperty(prop, "httpIdleTimeout", DEFAULT.idleTimeout, 1),
+                intProperty(prop, "httpConnectTimeout", DEFAULT.connectTimeout, 0),
+                intProperty(prop, "httpReadTimeout", DEFAULT.readTimeout, 0),
+                intProperty(prop, "httpSocketBufferSize", DEFAULT.socketBufferSize, 0),
+                Boolean.parseBoolean(prop.getProperty("httpCompression", String.valueOf(DEFAULT.compression)).trim()),
+                intProperty(prop, "httpAsyncThreads", DEFAULT.asyncThreads, 1));
+    }
+
+    private static int intProperty(Properties prop, String name, int defaultValue, int minimum) {
+        if (!prop.containsKey(name)) {
+            return defaultValue;
+        }
+        final int value;
+        try {
+            value = Integer.parseInt(prop.getProperty(name).trim());
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException(name + " " + '"' + prop.getProperty(name) + '"' + " is not a valid number");
+        }
+        if (value < minimum) {
+            throw new IllegalArgumentException(name + " must be at least " + minimum + ".");
+        }
+        return value;
+    }
+
+    public boolean isApacheConnector() {
+        return "apache".equals(connector);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TransportSettings that = (TransportSettings) o;
+        return maxConnections == that.maxConnections && maxConnectionsPerRoute == that.maxConnectionsPerRoute && idleTimeout == that.idleTimeout
+                && connectTimeout == that.connectTimeout && readTimeout == that.readTimeout && socketBufferSize == that.socketBufferSize
+                && compression == that.compression && asyncThreads == that.asyncThreads && connector.equals(that.connector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connector, maxConnections, maxConnectionsPerRoute, idleTimeout, connectTimeout, readTimeout, socketBufferSize, compression, asyncThreads);
+    }
+}
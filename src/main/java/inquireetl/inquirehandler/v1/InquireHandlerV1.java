@@ -3,6 +3,9 @@ package inquireetl.inquirehandler.v1;
 import inquireetl.inquirehandler.AbstractInquireHandler;
 import inquireetl.inquirehandler.AbstractPoller;
 import inquireetl.inquirehandler.AbstractQueryResultMessage;
+import inquireetl.inquirehandler.PollScheduler;
+import inquireetl.inquirehandler.QueryFailureException;
+import inquireetl.inquirehandler.TransportSettings;
 import inquireetl.inquirehandler.v1.models.*;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
@@ -14,6 +17,7 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class InquireHandlerV1 extends AbstractInquireHandler {
 
@@ -21,6 +25,10 @@ public class InquireHandlerV1 extends AbstractInquireHandler {
         super(serverUrl, accessToken);
     }
 
+    public InquireHandlerV1(final URL serverUrl, final String accessToken, final TransportSettings transportSettings) {
+        super(serverUrl, accessToken, transportSettings);
+    }
+
     public String login(final String username, final String password) {
         final String accessToken = doPost(webTarget.path("/v1/auth/login"), Entity.json(new Login(username, password)), String.class);
         authorizationFilter.setAccessToken(accessToken);
@@ -32,6 +40,11 @@ public class InquireHandlerV1 extends AbstractInquireHandler {
         authorizationFilter.setAccessToken(null);
     }
 
+    public CompletableFuture<List<SharedQuery>> getSharedQueriesAsync(String ldsName) {
+        return doGetAsync(webTarget.path("/v1/tql/"+ ldsName + "/shared-queries"), new GenericType<>() {
+        });
+    }
+
     public List<SharedQuery> getSharedQueries(String ldsName){
         return doGet(webTarget.path("/v1/tql/"+ ldsName + "/shared-queries"), new GenericType<>() {
         });
@@ -44,35 +57,65 @@ public class InquireHandlerV1 extends AbstractInquireHandler {
 
         AbstractQueryResultMessage message =
                 submitQueryByTQLStringOrName(webTarget.path("/v1/tql/" + ldsName +"/shared-queries/submit"), queryParameters, null);
-        return new QueryPollerV1(webTarget, authorizationFilter, message, queryParameters.get("timeout"));
+        return new QueryPollerV1(webTarget, authorizationFilter, message, queryParameters.get("timeout"), new PollScheduler(maxPollInterval));
+    }
+
+    @Override
+    public CompletableFuture<AbstractPoller> submitSharedQueryAsync(final String ldsName, final String identifier, final Map<String, Object> parameters) {
+        Map<String, Object> queryParameters = new HashMap<>(parameters != null ? parameters : Map.of());
+        queryParameters.put("identifier", identifier);
+
+        WebTarget submitTarget = withQueryParameters(webTarget.path("/v1/tql/" + ldsName +"/shared-queries/submit"), queryParameters);
+        return readAsync(doPostAsync(submitTarget, submitEntity(null)),
+                response -> new QueryPollerV1(webTarget, authorizationFilter, parseResponse(response), queryParameters.get("timeout"), new PollScheduler(maxPollInterval)));
+    }
+
+    @Override
+    public AbstractPoller attachQuery(final String executionId, final Map<String, Object> parameters) {
+        // The query is polled as if it had just been submitted with a slow time estimate
+        ExecutionConfiguration executionConfiguration = new ExecutionConfiguration();
+        executionConfiguration.setTimeEstimate(ExecutionConfiguration.TimeEstimate.slow);
+        StartExecutionMessage message = new StartExecutionMessage();
+        message.setId(executionId);
+        message.setExecutionConfiguration(executionConfiguration);
+        return new QueryPollerV1(webTarget, authorizationFilter, message, parameters != null ? parameters.get("timeout") : null, new PollScheduler(maxPollInterval));
     }
 
     private AbstractQueryResultMessage submitQueryByTQLStringOrName(WebTarget webTarget, Map<String, Object> queryParameters, String tqlQuery) throws Exception {
+        Response response = doPost(withQueryParameters(webTarget, queryParameters), submitEntity(tqlQuery));
+
+        return parseResponse(response);
+    }
+
+    private static WebTarget withQueryParameters(WebTarget webTarget, Map<String, Object> queryParameters) {
         if (queryParameters != null) {
             for (Map.Entry<String, Object> entry : queryParameters.entrySet()) {
                 webTarget = webTarget.queryParam(entry.getKey(), entry.getValue());
             }
         }
+        return webTarget;
+    }
 
+    private static Entity<Form> submitEntity(String tqlQuery) {
         Form formData = new Form();
         if (tqlQuery != null) {
             formData = formData.param("query", tqlQuery);
         }
-        Response response = doPost(webTarget, Entity.entity(formData, MediaType.APPLICATION_FORM_URLENCODED));
-
-        return parseResponse(response);
+        return Entity.entity(formData, MediaType.APPLICATION_FORM_URLENCODED);
     }
 
     public static AbstractQueryResultMessage parseResponse(Response response) throws Exception {
 
+        checkServerError(checkAuthorized(response));
+
         if (response.getStatus() == Response.Status.NO_CONTENT.getStatusCode()) {
             throw new Exception("User does not have sufficient rights to perform this operation");
         }
 
-        final Message message = response.readEntity(Message.class);
+        final Message message = readMessage(response, Message.class);
 
         if (message instanceof FailureMessage) {
-            throw new Exception(((FailureMessage) message).getErrorMessage());
+            throw new QueryFailureException(((FailureMessage) message).getErrorMessage());
         }
 
         return (AbstractQueryResultMessage) message;
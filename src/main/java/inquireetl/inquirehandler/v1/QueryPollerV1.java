@@ -3,21 +3,34 @@ package inquireetl.inquirehandler.v1;
 import inquireetl.inquirehandler.AbstractPoller;
 import inquireetl.inquirehandler.AbstractQueryResultMessage;
 import inquireetl.inquirehandler.AuthorizationFilter;
+import inquireetl.inquirehandler.PollScheduler;
+import inquireetl.inquirehandler.SpooledResult;
+import inquireetl.inquirehandler.v1.models.AggregationMethod;
 import inquireetl.inquirehandler.v1.models.ExecutionConfiguration;
+import inquireetl.inquirehandler.v1.models.ExecutionProgress;
 import inquireetl.inquirehandler.v1.models.FinalResultMessage;
+import inquireetl.inquirehandler.v1.models.PartialUpdateMessage;
 import inquireetl.inquirehandler.v1.models.StartExecutionMessage;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class QueryPollerV1 extends AbstractPoller {
 
     private AbstractQueryResultMessage lastMessage;
 
-    public QueryPollerV1(WebTarget webTarget, AuthorizationFilter authorizationFilter, AbstractQueryResultMessage lastMessage, Object timeout) {
-        super(webTarget, authorizationFilter);
+    public QueryPollerV1(WebTarget webTarget, AuthorizationFilter authorizationFilter, AbstractQueryResultMessage lastMessage, Object timeout, PollScheduler pollScheduler) {
+        super(webTarget, authorizationFilter, pollScheduler);
         this.lastMessage = lastMessage;
         this.timeout = timeout;
+        if (lastMessage instanceof StartExecutionMessage) {
+            ExecutionConfiguration executionConfiguration = ((StartExecutionMessage) lastMessage).getExecutionConfiguration();
+            pollScheduler.onStart(executionConfiguration != null && executionConfiguration.getTimeEstimate() != null
+                    ? executionConfiguration.getTimeEstimate().name() : null);
+        }
     }
 
     @Override
@@ -25,6 +38,11 @@ public class QueryPollerV1 extends AbstractPoller {
         return lastMessage.getResult();
     }
 
+    @Override
+    public String getExecutionId() {
+        return lastMessage.getId();
+    }
+
     @Override
     public AbstractQueryResultMessage parseResponse(Response pollResponse) throws Exception {
         return InquireHandlerV1.parseResponse(pollResponse);
@@ -34,19 +52,84 @@ public class QueryPollerV1 extends AbstractPoller {
     public boolean poll() throws Exception {
 
         if (isFinished()) {
+            consumeResults();
             return true;
         }
 
+        return onPollResponse(doGet(pollTarget()));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> pollAsync() {
+
+        if (isFinished()) {
+            try {
+                consumeResults();
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return readAsync(doGetAsync(pollTarget()), this::onPollResponse);
+    }
+
+    private WebTarget pollTarget() {
         WebTarget wt = webTarget.path("/v1/tql/poll").queryParam("id", lastMessage.getId());
         if (timeout != null) {
             wt = wt.queryParam("timeout", timeout);
         }
-        Response pollResponse = doGet(wt);
+        return wt;
+    }
+
+    private boolean onPollResponse(Response pollResponse) throws Exception {
+        AbstractQueryResultMessage previousMessage = lastMessage;
         lastMessage = parseResponse(pollResponse);
+        try {
+            schedulePoll();
+            consumeResults();
+        } finally {
+            // The rows of a partial update are not needed any more once the next message arrived
+            if (previousMessage.getResult() instanceof SpooledResult) {
+                ((SpooledResult) previousMessage.getResult()).close();
+            }
+        }
 
         return isFinished();
     }
 
+    private void consumeResults() throws IOException {
+        if (resultAggregator == null) {
+            return;
+        }
+        if (isFinished()) {
+            resultAggregator.onFinal(lastMessage.getResult());
+        } else if (lastMessage instanceof PartialUpdateMessage) {
+            AggregationMethod aggregationMethod = ((PartialUpdateMessage) lastMessage).getAggregationMethod();
+            LinkedHashMap<String, Boolean> orderKeys = new LinkedHashMap<>();
+            if (aggregationMethod != null && aggregationMethod.getOrderKeys() != null) {
+                for (AggregationMethod.OrderKey orderKey : aggregationMethod.getOrderKeys()) {
+                    orderKeys.put(orderKey.getKey(), orderKey.getDirection() != AggregationMethod.OrderKey.Direction.DESCENDING);
+                }
+            }
+            resultAggregator.onPartial(
+                    aggregationMethod != null && aggregationMethod.getMethod() != null ? aggregationMethod.getMethod().name() : null,
+                    aggregationMethod != null ? aggregationMethod.getKeys() : null,
+                    orderKeys,
+                    lastMessage.getResult());
+        }
+    }
+
+    private void schedulePoll() {
+        ExecutionProgress progress = lastMessage instanceof PartialUpdateMessage ? ((PartialUpdateMessage) lastMessage).getProgress() : null;
+        if (progress != null) {
+            recordProgress(progress.getPagesProcessed(), progress.getSeenResults(), progress.getMeanExecutionTime());
+            pollScheduler.onProgress(progress.getMeanExecutionTime(), progress.getPagesProcessed(), progress.getEstimatedPages());
+        } else {
+            pollScheduler.onNoProgress();
+        }
+    }
+
     public boolean isFinished() {
 
         if (lastMessage instanceof FinalResultMessage) {
@@ -18,31 +18,63 @@ public class ExecutionProgress {
         this.seenResults = seenResults;
     }
 
+    public long getSeenResults() {
+        return seenResults;
+    }
+
     public void setSeenSessions(long seenSessions) {
         this.seenSessions = seenSessions;
     }
 
+    public long getSeenSessions() {
+        return seenSessions;
+    }
+
     public void setTotalSessions(long totalSessions) {
         this.totalSessions = totalSessions;
     }
 
+    public long getTotalSessions() {
+        return totalSessions;
+    }
+
     public void setPagesProcessed(int pagesProcessed) {
         this.pagesProcessed = pagesProcessed;
     }
 
+    public int getPagesProcessed() {
+        return pagesProcessed;
+    }
+
     public void setEstimatedPages(int estimatedPages) {
         this.estimatedPages = estimatedPages;
     }
 
+    public int getEstimatedPages() {
+        return estimatedPages;
+    }
+
     public void setLastExecutionTime(long lastExecutionTime) {
         this.lastExecutionTime = lastExecutionTime;
     }
 
+    public long getLastExecutionTime() {
+        return lastExecutionTime;
+    }
+
     public void setMeanExecutionTime(double meanExecutionTime) {
         this.meanExecutionTime = meanExecutionTime;
     }
 
+    public double getMeanExecutionTime() {
+        return meanExecutionTime;
+    }
+
     public void setExecutionTimeVariance(double executionTimeVariance) {
         this.executionTimeVariance = executionTimeVariance;
     }
+
+    public double getExecutionTimeVariance() {
+        return executionTimeVariance;
+    }
 }
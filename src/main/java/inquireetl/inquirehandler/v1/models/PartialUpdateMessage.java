@@ -11,10 +11,18 @@ public class PartialUpdateMessage extends AbstractQueryResultMessage {
         super();
     }
 
+    public ExecutionProgress getProgress() {
+        return progress;
+    }
+
     public void setProgress(ExecutionProgress progress) {
         this.progress = progress;
     }
 
+    public AggregationMethod getAggregationMethod() {
+        return aggregationMethod;
+    }
+
     public void setAggregationMethod(AggregationMethod aggregationMethod) {
         this.aggregationMethod = aggregationMethod;
     }
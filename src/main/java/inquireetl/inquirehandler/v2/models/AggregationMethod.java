@@ -9,14 +9,26 @@ public class AggregationMethod {
     public AggregationMethod() {
     }
 
+    public Method getMethod() {
+        return method;
+    }
+
     public void setMethod(Method method) {
         this.method = method;
     }
 
+    public Iterable<OrderKey> getOrderKeys() {
+        return orderKeys;
+    }
+
     public void setOrderKeys(Iterable<OrderKey> orderKeys) {
         this.orderKeys = orderKeys;
     }
 
+    public Iterable<String> getKeys() {
+        return keys;
+    }
+
     public void setKeys(Iterable<String> keys) {
         this.keys = keys;
     }
@@ -29,10 +41,18 @@ public class AggregationMethod {
         public OrderKey() {
         }
 
+        public String getKey() {
+            return key;
+        }
+
         public void setKey(String key) {
             this.key = key;
         }
 
+        public Direction getDirection() {
+            return direction;
+        }
+
         public void setDirection(Direction direction) {
             this.direction = direction;
         }
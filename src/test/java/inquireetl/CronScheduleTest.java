@@ -0,0 +1,94 @@
+package inquireetl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CronScheduleTest {
+
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    @Test
+    void runsEveryStepOfAField() {
+        final CronSchedule schedule = CronSchedule.parse("*/5 * * * *");
+        assertEquals(at("2024-01-01T10:05"), schedule.next(at("2024-01-01T10:02:30")));
+        // The next time is always after the given one, even when that one is on the schedule
+        assertEquals(at("2024-01-01T10:10"), schedule.next(at("2024-01-01T10:05")));
+        assertEquals(at("2024-01-02T00:00"), schedule.next(at("2024-01-01T23:55")));
+    }
+
+    @Test
+    void runsAValueWithAStepUpToTheEndOfTheField() {
+        final CronSchedule schedule = CronSchedule.parse("5/15 * * * *");
+        assertEquals(at("2024-01-01T10:20"), schedule.next(at("2024-01-01T10:05")));
+        assertEquals(at("2024-01-01T10:35"), schedule.next(at("2024-01-01T10:21")));
+        assertEquals(at("2024-01-01T11:05"), schedule.next(at("2024-01-01T10:50")));
+    }
+
+    @Test
+    void runsRangesAndLists() {
+        final CronSchedule schedule = CronSchedule.parse("0,30 6-18 * * 1-5");
+        assertEquals(at("2024-01-05T18:30"), schedule.next(at("2024-01-05T18:00")));
+        // From Friday evening to Monday morning
+        assertEquals(at("2024-01-08T06:00"), schedule.next(at("2024-01-05T18:30")));
+        assertEquals(at("2024-01-08T06:00"), CronSchedule.parse("0 6 * * 1-5").next(at("2024-01-06T12:00")));
+    }
+
+    @Test
+    void runsOnADayMatchingEitherDayOfMonthOrDayOfWeekWhenBothAreRestricted() {
+        final CronSchedule schedule = CronSchedule.parse("0 0 13 * 5");
+        // Friday the 6th matches the day of week only
+        assertEquals(at("2024-09-06T00:00"), schedule.next(at("2024-09-01T00:00")));
+        // Sunday the 13th matches the day of month only
+        assertEquals(at("2024-10-13T00:00"), schedule.next(at("2024-10-12T00:00")));
+    }
+
+    @Test
+    void runsOnADayMatchingBothWhenOnlyOneIsRestricted() {
+        assertEquals(at("2024-02-01T00:00"), CronSchedule.parse("0 0 1 * *").next(at("2024-01-15T00:00")));
+        assertEquals(at("2024-01-08T00:00"), CronSchedule.parse("0 0 * * 1").next(at("2024-01-01T00:00")));
+        assertEquals(at("2024-03-01T00:00"), CronSchedule.parse("0 0 * 3 *").next(at("2024-01-15T08:00")));
+    }
+
+    @Test
+    void takesDaysOfWeekZeroAndSevenAsSunday() {
+        assertEquals(at("2024-01-07T12:00"), CronSchedule.parse("0 12 * * 0").next(at("2024-01-01T00:00")));
+        assertEquals(at("2024-01-07T12:00"), CronSchedule.parse("0 12 * * 7").next(at("2024-01-01T00:00")));
+    }
+
+    @Test
+    void runsOnTheLeapDay() {
+        assertEquals(at("2028-02-29T00:00"), CronSchedule.parse("0 0 29 2 *").next(at("2024-03-01T00:00")));
+    }
+
+    @Test
+    void keepsTheZoneOfTheGivenTime() {
+        final ZoneId zone = ZoneId.of("Europe/Stockholm");
+        final ZonedDateTime after = LocalDateTime.parse("2024-03-30T07:00").atZone(zone);
+        assertEquals(LocalDateTime.parse("2024-03-31T06:00").atZone(zone), CronSchedule.parse("0 6 * * *").next(after));
+    }
+
+    @Test
+    void failsOnADateThatNeverComes() {
+        assertThrows(IllegalStateException.class, () -> CronSchedule.parse("0 0 30 2 *").next(at("2024-01-01T00:00")));
+    }
+
+    @Test
+    void rejectsInvalidExpressions() {
+        assertThrows(IllegalArgumentException.class, () -> CronSchedule.parse("* * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronSchedule.parse("60 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronSchedule.parse("5-1 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronSchedule.parse("*/0 * * * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronSchedule.parse("* * 0 * *"));
+        assertThrows(IllegalArgumentException.class, () -> CronSchedule.parse("a * * * *"));
+    }
+
+    private static ZonedDateTime at(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(UTC);
+    }
+}
@@ -0,0 +1,131 @@
+package inquireetl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimeWindowsTest {
+
+    private TimeZone defaultTimeZone;
+
+    @BeforeEach
+    void saveTimeZone() {
+        defaultTimeZone = TimeZone.getDefault();
+    }
+
+    @AfterEach
+    void restoreTimeZone() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    void splitsIntoEqualWindowsWithTheRemainderInTheLast() {
+        assertWindows(TimeWindows.split(0, 99, "4"), 0, 24, 25, 49, 50, 74, 75, 99);
+        assertWindows(TimeWindows.split(0, 9, "3"), 0, 2, 3, 5, 6, 9);
+    }
+
+    @Test
+    void splitsIntoNoMoreWindowsThanMilliseconds() {
+        assertWindows(TimeWindows.split(0, 2, "10"), 0, 0, 1, 1, 2, 2);
+        assertWindows(TimeWindows.split(5, 5, "3"), 5, 5);
+    }
+
+    @Test
+    void splitsByDayAtLocalMidnight() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        final long from = millis("2024-01-01T06:00", "UTC");
+        final long to = millis("2024-01-03T12:00", "UTC");
+        assertWindows(TimeWindows.split(from, to, "day"),
+                from, millis("2024-01-02T00:00", "UTC") - 1,
+                millis("2024-01-02T00:00", "UTC"), millis("2024-01-03T00:00", "UTC") - 1,
+                millis("2024-01-03T00:00", "UTC"), to);
+    }
+
+    @Test
+    void givesARangeEndingAtMidnightNoWindowOfItsOwnForThatInstant() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        final long from = millis("2024-01-01T00:00", "UTC");
+        final long to = millis("2024-01-03T00:00", "UTC");
+        assertWindows(TimeWindows.split(from, to, "day"),
+                from, millis("2024-01-02T00:00", "UTC") - 1,
+                millis("2024-01-02T00:00", "UTC"), to);
+    }
+
+    @Test
+    void keepsARangeWithinOneDayWhole() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        final long from = millis("2024-01-01T06:00", "UTC");
+        final long to = millis("2024-01-01T18:00", "UTC");
+        assertWindows(TimeWindows.split(from, to, "day"), from, to);
+    }
+
+    @Test
+    void splitsByWeekAtMondayMidnight() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        // A Wednesday to the Wednesday two weeks later
+        final long from = millis("2024-01-03T08:00", "UTC");
+        final long to = millis("2024-01-17T12:00", "UTC");
+        assertWindows(TimeWindows.split(from, to, "week"),
+                from, millis("2024-01-08T00:00", "UTC") - 1,
+                millis("2024-01-08T00:00", "UTC"), millis("2024-01-15T00:00", "UTC") - 1,
+                millis("2024-01-15T00:00", "UTC"), to);
+    }
+
+    @Test
+    void splitsByDayAcrossDaylightSavingTime() {
+        final String zone = "Europe/Stockholm";
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        // Clocks go forward on the 31st of March and back on the 27th of October
+        List<long[]> windows = TimeWindows.split(millis("2024-03-30T00:00", zone), millis("2024-04-01T12:00", zone), "day");
+        assertEquals(3, windows.size());
+        assertEquals(millis("2024-03-31T00:00", zone), windows.get(1)[0]);
+        assertEquals(millis("2024-04-01T00:00", zone), windows.get(2)[0]);
+        assertEquals(Duration.ofHours(23).toMillis(), windows.get(1)[1] + 1 - windows.get(1)[0]);
+
+        windows = TimeWindows.split(millis("2024-10-26T00:00", zone), millis("2024-10-28T12:00", zone), "day");
+        assertEquals(3, windows.size());
+        assertEquals(millis("2024-10-27T00:00", zone), windows.get(1)[0]);
+        assertEquals(millis("2024-10-28T00:00", zone), windows.get(2)[0]);
+        assertEquals(Duration.ofHours(25).toMillis(), windows.get(1)[1] + 1 - windows.get(1)[0]);
+    }
+
+    @Test
+    void splitsByWeekAcrossDaylightSavingTime() {
+        final String zone = "Europe/Stockholm";
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        final List<long[]> windows = TimeWindows.split(millis("2024-03-27T00:00", zone), millis("2024-04-03T00:00", zone), "week");
+        assertEquals(2, windows.size());
+        assertEquals(millis("2024-04-01T00:00", zone), windows.get(1)[0]);
+    }
+
+    @Test
+    void rejectsInvalidSplits() {
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.validate("month"));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.validate("0"));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.split(0, 10, "-2"));
+    }
+
+    private static long millis(String localDateTime, String zone) {
+        return LocalDateTime.parse(localDateTime).atZone(ZoneId.of(zone)).toInstant().toEpochMilli();
+    }
+
+    /**
+     * @param bounds Start and end of each expected window.
+     */
+    private static void assertWindows(List<long[]> windows, long... bounds) {
+        assertEquals(bounds.length / 2, windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            assertArrayEquals(new long[]{bounds[2 * i], bounds[2 * i + 1]}, windows.get(i), "window " + i);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package inquireetl.inquirehandler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResultAggregatorTest {
+
+    @Test
+    void appendsTheRowsOfTheFinalResultNotAppendedYet() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onPartial("APPEND", null, null, rows(0));
+        aggregator.onPartial("APPEND", null, null, rows(1, 2));
+        aggregator.onFinal(rows(0, 1, 2, 3, 4));
+        assertEquals(rows(0, 1, 2, 3, 4), consumer.rows);
+        assertEquals(0, consumer.replaced);
+    }
+
+    @Test
+    void takesAPartialWithoutMethodAsAppend() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onPartial(null, null, null, rows(0));
+        aggregator.onFinal(rows(0, 1));
+        assertEquals(rows(0, 1), consumer.rows);
+        assertEquals(0, consumer.replaced);
+    }
+
+    @Test
+    void replacesTheAppendedRowsWithAShorterFinalResult() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onPartial("APPEND", null, null, rows(0, 1, 2));
+        aggregator.onFinal(rows(7));
+        assertEquals(rows(7), consumer.rows);
+        assertEquals(1, consumer.replaced);
+    }
+
+    @Test
+    void replacesEverythingReceivedOnReplace() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onPartial("APPEND", null, null, rows(0, 1));
+        aggregator.onPartial("REPLACE", null, null, rows(5));
+        assertEquals(rows(5), consumer.rows);
+        // After a replacement the final result is not a continuation of what was received
+        aggregator.onFinal(rows(5, 6));
+        assertEquals(rows(5, 6), consumer.rows);
+    }
+
+    @Test
+    void mergesUpsertsByKeyInOrderOfTheOrderKeys() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        final LinkedHashMap<String, Boolean> ascending = new LinkedHashMap<>();
+        ascending.put("count", true);
+        aggregator.onPartial("UPSERT", List.of("id"), ascending, List.of(row("a", 10), row("b", 5)));
+        assertEquals(List.of(row("b", 5), row("a", 10)), consumer.rows);
+        aggregator.onPartial("UPSERT", List.of("id"), ascending, List.of(row("a", 3), row("c", 7)));
+        assertEquals(List.of(row("a", 3), row("b", 5), row("c", 7)), consumer.rows);
+
+        final LinkedHashMap<String, Boolean> descending = new LinkedHashMap<>();
+        descending.put("count", false);
+        aggregator.onPartial("UPSERT", List.of("id"), descending, List.of(row("b", 1)));
+        assertEquals(List.of(row("c", 7), row("a", 3), row("b", 1)), consumer.rows);
+    }
+
+    @Test
+    void keepsTheOrderOfFirstArrivalOfUpsertsWithoutOrderKeys() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onPartial("UPSERT", List.of("id"), null, List.of(row("a", 1), row("b", 2)));
+        aggregator.onPartial("UPSERT", List.of("id"), null, List.of(row("a", 9)));
+        assertEquals(List.of(row("a", 9), row("b", 2)), consumer.rows);
+    }
+
+    @Test
+    void ignoresEverythingAfterTheFinalResult() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onFinal(rows(0, 1));
+        aggregator.onPartial("APPEND", null, null, rows(2));
+        aggregator.onFinal(rows(3));
+        assertEquals(rows(0, 1), consumer.rows);
+    }
+
+    @Test
+    void handsOverAnEmptyResultForAFinalResultWithoutRows() throws IOException {
+        final CollectingConsumer consumer = new CollectingConsumer();
+        final ResultAggregator aggregator = new ResultAggregator(consumer);
+        aggregator.onPartial("APPEND", null, null, rows(0, 1));
+        aggregator.onFinal(null);
+        assertEquals(rows(), consumer.rows);
+    }
+
+    private static List<Map<String, Object>> rows(int... values) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (int value : values) {
+            rows.add(Map.of("n", value));
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> row(String id, int count) {
+        return Map.of("id", id, "count", count);
+    }
+
+    /**
+     * Applies every call to one list of rows, reading the rows as they are handed over like the writers of the output files do.
+     */
+    private static class CollectingConsumer implements ResultConsumer {
+
+        private final List<Map<String, Object>> rows = new ArrayList<>();
+        private int replaced = 0;
+
+        @Override
+        public void append(Iterable<Map<String, Object>> rows) {
+            rows.forEach(this.rows::add);
+        }
+
+        @Override
+        public void replace(Iterable<Map<String, Object>> rows) {
+            replaced++;
+            this.rows.clear();
+            rows.forEach(this.rows::add);
+        }
+
+        @Override
+        public void abort() {
+            rows.clear();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}